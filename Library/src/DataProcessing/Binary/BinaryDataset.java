@@ -0,0 +1,242 @@
+package DataProcessing.Binary;
+
+import DataProcessing.domain.ColumnStats;
+import DataProcessing.domain.Dataset;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+// Columnar binary dataset file, opened by memory-mapping with no parsing.
+//
+// Layout, all values little-endian:
+//   header (64 bytes)   magic, version, row count, feature count, source label column and header flag,
+//                       source CSV size and modification time, offsets of the first column and the labels
+//   column stats        min, max, mean, std per feature
+//   feature columns     one block of numRows doubles per feature, each starting on a 64-byte boundary
+//   labels              numRows ints, starting on a 64-byte boundary
+public class BinaryDataset {
+    public static final String EXTENSION = ".mlds";
+
+    private static final int MAGIC = 0x53444C4D; // "MLDS"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int ALIGNMENT = 64;
+    private static final int WRITE_BUFFER_SIZE = 1 << 20;
+
+    private final int numRows;
+    private final int numFeatures;
+    private final int labelColumn;
+    private final boolean hasHeader;
+    private final long sourceSize;
+    private final long sourceModified;
+    private final ColumnStats stats;
+    private final DoubleBuffer[] columns;
+    private final IntBuffer labels;
+
+    private BinaryDataset(int numRows, int numFeatures, int labelColumn, boolean hasHeader, long sourceSize,
+                          long sourceModified, ColumnStats stats, DoubleBuffer[] columns, IntBuffer labels) {
+        this.numRows = numRows;
+        this.numFeatures = numFeatures;
+        this.labelColumn = labelColumn;
+        this.hasHeader = hasHeader;
+        this.sourceSize = sourceSize;
+        this.sourceModified = sourceModified;
+        this.stats = stats;
+        this.columns = columns;
+        this.labels = labels;
+    }
+
+    public static void write(Dataset dataset, Path file, long sourceSize, long sourceModified,
+                             boolean hasHeader, int labelColumn) throws IOException {
+        int numRows = dataset.numRows();
+        int numFeatures = dataset.numFeatures();
+        ColumnStats stats = ColumnStats.of(dataset);
+        long columnsOffset = align(HEADER_SIZE + 32L * numFeatures);
+        long columnStride = align(8L * numRows);
+        long labelsOffset = columnsOffset + columnStride * numFeatures;
+
+        // Write next to the target and move it into place so readers never see a partial file
+        Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate((int) columnsOffset).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC)
+                    .putInt(VERSION)
+                    .putLong(numRows)
+                    .putInt(numFeatures)
+                    .putInt(labelColumn)
+                    .putInt(hasHeader ? 1 : 0)
+                    .putInt(0)
+                    .putLong(sourceSize)
+                    .putLong(sourceModified)
+                    .putLong(columnsOffset)
+                    .putLong(labelsOffset);
+            for (int j = 0; j < numFeatures; j++) {
+                header.putDouble(stats.min(j))
+                        .putDouble(stats.max(j))
+                        .putDouble(stats.mean(j))
+                        .putDouble(stats.std(j));
+            }
+            header.clear();
+            writeFully(channel, header, 0);
+
+            ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            double[] values = dataset.columnMajor();
+            for (int j = 0; j < numFeatures; j++) {
+                long position = columnsOffset + columnStride * j;
+                int offset = dataset.columnOffset(j);
+                for (int i = 0; i < numRows; ) {
+                    int count = Math.min(numRows - i, WRITE_BUFFER_SIZE / 8);
+                    buffer.clear();
+                    buffer.asDoubleBuffer().put(values, offset + i, count);
+                    buffer.limit(count * 8);
+                    position += writeFully(channel, buffer, position);
+                    i += count;
+                }
+            }
+
+            int[] labelValues = dataset.labels();
+            long position = labelsOffset;
+            for (int i = 0; i < numRows; ) {
+                int count = Math.min(numRows - i, WRITE_BUFFER_SIZE / 4);
+                buffer.clear();
+                buffer.asIntBuffer().put(labelValues, i, count);
+                buffer.limit(count * 4);
+                position += writeFully(channel, buffer, position);
+                i += count;
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static BinaryDataset open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_SIZE) {
+                throw new IOException("Not a binary dataset: " + file);
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt(0) != MAGIC) {
+                throw new IOException("Not a binary dataset: " + file);
+            }
+            if (header.getInt(4) != VERSION) {
+                throw new IOException("Unsupported binary dataset version " + header.getInt(4));
+            }
+
+            long rows = header.getLong(8);
+            int numFeatures = header.getInt(16);
+            int labelColumn = header.getInt(20);
+            boolean hasHeader = header.getInt(24) != 0;
+            long sourceSize = header.getLong(32);
+            long sourceModified = header.getLong(40);
+            long columnsOffset = header.getLong(48);
+            long labelsOffset = header.getLong(56);
+            // Every count and offset is checked against the layout and the file size before anything is mapped,
+            // so a truncated or damaged file fails here with an IOException. The bounds on rows and numFeatures
+            // keep each mapping under 2 GB and the offset arithmetic below from overflowing.
+            if (rows < 0 || rows * 8 > Integer.MAX_VALUE || numFeatures <= 0 || 32L * numFeatures > Integer.MAX_VALUE) {
+                throw new IOException("Corrupt binary dataset: " + file);
+            }
+            long columnStride = align(8L * rows);
+            if (columnsOffset != align(HEADER_SIZE + 32L * numFeatures)
+                    || labelsOffset != columnsOffset + columnStride * numFeatures
+                    || labelsOffset + 4 * rows > fileSize) {
+                throw new IOException("Corrupt binary dataset: " + file);
+            }
+            int numRows = (int) rows;
+
+            ByteBuffer statsBlock = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, 32L * numFeatures)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            double[] min = new double[numFeatures];
+            double[] max = new double[numFeatures];
+            double[] mean = new double[numFeatures];
+            double[] std = new double[numFeatures];
+            for (int j = 0; j < numFeatures; j++) {
+                min[j] = statsBlock.getDouble();
+                max[j] = statsBlock.getDouble();
+                mean[j] = statsBlock.getDouble();
+                std[j] = statsBlock.getDouble();
+            }
+
+            DoubleBuffer[] columns = new DoubleBuffer[numFeatures];
+            for (int j = 0; j < numFeatures; j++) {
+                MappedByteBuffer block = channel.map(FileChannel.MapMode.READ_ONLY,
+                        columnsOffset + columnStride * j, 8L * numRows);
+                columns[j] = block.order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+            }
+            IntBuffer labels = channel.map(FileChannel.MapMode.READ_ONLY, labelsOffset, 4L * numRows)
+                    .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+
+            return new BinaryDataset(numRows, numFeatures, labelColumn, hasHeader, sourceSize, sourceModified,
+                    new ColumnStats(min, max, mean, std), columns, labels);
+        }
+    }
+
+    // True when this file was written from a CSV of the given size and modification time read with the same options
+    public boolean matchesSource(long size, long modified, boolean hasHeader, int labelColumn) {
+        return sourceSize == size && sourceModified == modified
+                && this.hasHeader == hasHeader && this.labelColumn == labelColumn;
+    }
+
+    public int numRows() {
+        return numRows;
+    }
+
+    public int numFeatures() {
+        return numFeatures;
+    }
+
+    public ColumnStats stats() {
+        return stats;
+    }
+
+    // Zero-copy view of one feature column
+    public DoubleBuffer column(int feature) {
+        return columns[feature].duplicate();
+    }
+
+    // Zero-copy view of the label column
+    public IntBuffer labels() {
+        return labels.duplicate();
+    }
+
+    // Bulk-copies the mapped columns into a heap Dataset
+    public Dataset toDataset() {
+        // A heap Dataset holds every value in one array, so larger files can only be read through column()
+        long size = (long) numRows * numFeatures;
+        if (size > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Dataset with " + numRows + " rows and " + numFeatures
+                    + " features does not fit in one array");
+        }
+        double[] features = new double[(int) size];
+        for (int j = 0; j < numFeatures; j++) {
+            columns[j].duplicate().get(features, j * numRows, numRows);
+        }
+        int[] labelValues = new int[numRows];
+        labels.duplicate().get(labelValues);
+        return Dataset.fromColumns(features, labelValues, numFeatures);
+    }
+
+    private static long align(long position) {
+        return (position + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+
+    private static int writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int written = 0;
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer, position + written);
+        }
+        return written;
+    }
+}
@@ -0,0 +1,83 @@
+package DataProcessing.Binary;
+
+import DataProcessing.domain.Batch;
+import DataProcessing.domain.InstanceSource;
+
+import java.io.IOException;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+// Streams a binary dataset batch by batch straight from its mapped column blocks
+public class BinaryInstanceSource implements InstanceSource {
+    private final BinaryDataset dataset;
+    private final int batchSize;
+
+    public BinaryInstanceSource(Path file, int batchSize) throws IOException {
+        this(BinaryDataset.open(file), batchSize);
+    }
+
+    public BinaryInstanceSource(BinaryDataset dataset, int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be greater than 0");
+        }
+        this.dataset = dataset;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public int numFeatures() {
+        return dataset.numFeatures();
+    }
+
+    @Override
+    public int batchSize() {
+        return batchSize;
+    }
+
+    @Override
+    public Iterator<Batch> iterator() {
+        return new BatchIterator();
+    }
+
+    private class BatchIterator implements Iterator<Batch> {
+        private final int numFeatures = dataset.numFeatures();
+        private final Batch batch = new Batch(numFeatures, batchSize);
+        private final DoubleBuffer[] columns = new DoubleBuffer[numFeatures];
+        private final IntBuffer labels = dataset.labels();
+        private int row;
+
+        BatchIterator() {
+            for (int j = 0; j < numFeatures; j++) {
+                columns[j] = dataset.column(j);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return row < dataset.numRows();
+        }
+
+        @Override
+        public Batch next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            batch.clear();
+            int count = Math.min(batchSize, dataset.numRows() - row);
+            double[] features = batch.features();
+            for (int r = 0; r < count; r++) {
+                int offset = batch.nextRowOffset();
+                for (int j = 0; j < numFeatures; j++) {
+                    features[offset + j] = columns[j].get(row + r);
+                }
+                batch.commitRow(labels.get(row + r));
+            }
+            row += count;
+            return batch;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package DataProcessing.CSV;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.RecursiveAction;
+
+// Byte range of a CSV file that starts at a line boundary and ends right after a newline (or at EOF).
+// Parsing stops at the first malformed row and records its line number relative to the chunk,
+// the caller turns it into a global line number once the line counts of earlier chunks are known.
+class CSVChunk extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final FileChannel channel;
+    private final CSVParser parser;
+    private final long start;
+    private final long end;
+    private RowBuffer rows;
+
+    private long lineCount;
+    private long errorLine;
+    private String error;
+
+    CSVChunk(FileChannel channel, CSVParser parser, long start, long end, RowBuffer rows) {
+        this.channel = channel;
+        this.parser = parser;
+        this.start = start;
+        this.end = end;
+        this.rows = rows;
+    }
+
+    @Override
+    protected void compute() {
+        try {
+            parse();
+        } catch (IOException e) {
+            error = e.getMessage();
+        }
+    }
+
+    private void parse() throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        int limit = (int) (end - start);
+        if (rows == null) {
+            rows = new RowBuffer(parser.numFeatures(), estimateRows(buffer, limit));
+        }
+
+        int lineStart = 0;
+        while (lineStart < limit) {
+            int lineEnd = lineStart;
+            while (lineEnd < limit && buffer.get(lineEnd) != '\n') {
+                lineEnd++;
+            }
+            int next = lineEnd + 1;
+            if (lineEnd > lineStart && buffer.get(lineEnd - 1) == '\r') {
+                lineEnd--;
+            }
+            lineCount++;
+
+            if (lineEnd > lineStart) {
+                try {
+                    int offset = rows.nextRowOffset();
+                    rows.commitRow(parser.parseRow(buffer, lineStart, lineEnd, rows.features(), offset));
+                } catch (IOException e) {
+                    errorLine = lineCount;
+                    error = e.getMessage() + " in row: " + CSVParser.text(buffer, lineStart, lineEnd);
+                    return;
+                }
+            }
+            lineStart = next;
+        }
+    }
+
+    private int estimateRows(MappedByteBuffer buffer, int limit) {
+        int firstLine = 0;
+        while (firstLine < limit && buffer.get(firstLine) != '\n') {
+            firstLine++;
+        }
+        return (int) Math.min(Integer.MAX_VALUE / parser.numColumns(), (long) limit / (firstLine + 1) + 1);
+    }
+
+    long lineCount() {
+        return lineCount;
+    }
+
+    boolean failed() {
+        return error != null;
+    }
+
+    long errorLine() {
+        return errorLine;
+    }
+
+    String error() {
+        return error;
+    }
+
+    RowBuffer rows() {
+        return rows;
+    }
+}
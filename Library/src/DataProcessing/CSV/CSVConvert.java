@@ -1,56 +1,205 @@
 package DataProcessing.CSV;
 
+import DataProcessing.Binary.BinaryDataset;
+import DataProcessing.domain.Dataset;
 import DataProcessing.domain.Instance;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 
 public class CSVConvert {
+    // Largest range mapped at once; MappedByteBuffer is int-indexed
+    private static final long MAX_MAPPING = Integer.MAX_VALUE;
+    // Target chunk size, leaving room below MAX_MAPPING for the line that crosses the chunk's end
+    private static final long MAX_CHUNK = 1L << 30;
+    // Files are not split into chunks smaller than this
+    private static final long MIN_CHUNK = 1L << 22;
+
     private final String fileName;
-    private List<Instance<Double, Integer>> instances;
+    private final boolean hasHeader;
+    private final int labelColumn;
+    private final int parallelism;
+    private final boolean useCache;
+    private Dataset dataset;
 
     public CSVConvert(String fileName) throws IOException {
+        this(fileName, false, -1);
+    }
+
+    // labelColumn is zero-based, -1 means the last column
+    public CSVConvert(String fileName, boolean hasHeader, int labelColumn) throws IOException {
+        this(fileName, hasHeader, labelColumn, Runtime.getRuntime().availableProcessors());
+    }
+
+    // parallelism is the number of threads parsing chunks of the file, 1 parses sequentially
+    public CSVConvert(String fileName, boolean hasHeader, int labelColumn, int parallelism) throws IOException {
+        this(fileName, hasHeader, labelColumn, parallelism, true);
+    }
+
+    // With useCache the parsed data is kept in a binary file next to the CSV (<name>.csv.mlds)
+    // and loaded from there as long as the CSV keeps the same size and modification time
+    public CSVConvert(String fileName, boolean hasHeader, int labelColumn, int parallelism,
+                      boolean useCache) throws IOException {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Parallelism must be greater than 0");
+        }
         this.fileName = fileName;
-        instances = new ArrayList<>();
+        this.hasHeader = hasHeader;
+        this.labelColumn = labelColumn;
+        this.parallelism = parallelism;
+        this.useCache = useCache;
         readFile();
     }
 
     public void readFile() throws IOException {
-        try (BufferedReader br = new BufferedReader(new FileReader(fileName))) {
-            String line;
+        if (!useCache) {
+            parseFile();
+            return;
+        }
 
-            while ((line = br.readLine()) != null) {
+        Path source = Paths.get(fileName);
+        Path cache = Paths.get(fileName + BinaryDataset.EXTENSION);
+        long sourceSize = Files.size(source);
+        long sourceModified = Files.getLastModifiedTime(source).toMillis();
 
-                String[] tokens = line.split(",");
-                if (tokens.length != 9) {
-                    throw new IOException("Invalid file format: expected 9 columns but got " + tokens.length);
+        if (Files.isRegularFile(cache)) {
+            try {
+                BinaryDataset binary = BinaryDataset.open(cache);
+                if (binary.matchesSource(sourceSize, sourceModified, hasHeader, labelColumn)) {
+                    dataset = binary.toDataset();
+                    return;
                 }
+            } catch (IOException | RuntimeException e) {
+                // A damaged cache is rebuilt from the CSV rather than failing every later read
+                System.err.println("Ignoring unreadable dataset cache " + cache + ": " + e.getMessage());
+            }
+        }
+
+        parseFile();
+        try {
+            BinaryDataset.write(dataset, cache, sourceSize, sourceModified, hasHeader, labelColumn);
+        } catch (IOException e) {
+            System.err.println("Could not write dataset cache " + cache + ": " + e.getMessage());
+        }
+    }
+
+    private void parseFile() throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            long dataStart = hasHeader ? CSVParser.nextLineStart(channel, 0, fileSize) : 0;
+            long headerLines = hasHeader ? 1 : 0;
 
+            CSVParser parser = CSVParser.forFile(channel, dataStart, fileSize, labelColumn);
+            List<CSVChunk> chunks = new ArrayList<>();
+
+            if (parallelism == 1) {
+                // All chunks append to one buffer, in file order, sized from the first row
+                long firstLineBytes = CSVParser.nextLineStart(channel, dataStart, fileSize) - dataStart;
+                RowBuffer rows = new RowBuffer(parser.numFeatures(), (int) Math.min(
+                        Integer.MAX_VALUE / parser.numColumns(), (fileSize - dataStart) / Math.max(1, firstLineBytes) + 1));
+                for (long[] range : splitRanges(channel, dataStart, fileSize, MAX_CHUNK)) {
+                    CSVChunk chunk = new CSVChunk(channel, parser, range[0], range[1], rows);
+                    chunks.add(chunk);
+                    chunk.invoke();
+                    if (chunk.failed()) {
+                        break;
+                    }
+                }
+            } else {
+                long chunkSize = Math.max(MIN_CHUNK, Math.min(MAX_CHUNK, (fileSize - dataStart) / (parallelism * 4L) + 1));
+                for (long[] range : splitRanges(channel, dataStart, fileSize, chunkSize)) {
+                    chunks.add(new CSVChunk(channel, parser, range[0], range[1], null));
+                }
+                ForkJoinPool pool = new ForkJoinPool(parallelism);
                 try {
-                    List<Double> input = new ArrayList<>();
-                    for (int i = 0; i < 8; i++) {
-                        input.add(Double.parseDouble(tokens[i].trim()));
+                    pool.invoke(new RecursiveAction() {
+                        @Override
+                        protected void compute() {
+                            ForkJoinTask.invokeAll(chunks);
+                        }
+                    });
+                } finally {
+                    pool.shutdown();
+                }
+            }
+
+            // Report the first malformed row in file order with its global line number
+            long linesBefore = headerLines;
+            for (CSVChunk chunk : chunks) {
+                if (chunk.failed()) {
+                    if (chunk.errorLine() == 0) {
+                        throw new IOException(chunk.error());
                     }
+                    throw new IOException("Line " + (linesBefore + chunk.errorLine()) + ": " + chunk.error());
+                }
+                linesBefore += chunk.lineCount();
+            }
 
-                    // Parse the output (last column) correctly using parseInt
-                    Integer output = Integer.parseInt(tokens[8].trim());
+            dataset = stitch(chunks, parser.numFeatures());
+        } catch (Exception e) {
+            throw new IOException("Error reading CSV file: " + e.getMessage(), e);
+        }
+    }
+
+    // Concatenates the rows of all chunks in their original order
+    private Dataset stitch(List<CSVChunk> chunks, int numFeatures) {
+        if (parallelism == 1 || chunks.size() == 1) {
+            return chunks.get(0).rows().toDataset();
+        }
 
-                    Instance<Double, Integer> instance = new Instance<>(input, output);
-                    instances.add(instance);
-                } catch (NumberFormatException e) {
-                    System.err.println("Error parsing line: " + line);
-                    throw new IOException("Error parsing numeric values: " + e.getMessage());
+        long totalRows = 0;
+        for (CSVChunk chunk : chunks) {
+            totalRows += chunk.rows().size();
+        }
+        if (totalRows * numFeatures > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Dataset with " + totalRows + " rows does not fit in one array");
+        }
+
+        double[] features = new double[(int) totalRows * numFeatures];
+        int[] labels = new int[(int) totalRows];
+        int row = 0;
+        for (CSVChunk chunk : chunks) {
+            RowBuffer rows = chunk.rows();
+            System.arraycopy(rows.features(), 0, features, row * numFeatures, rows.size() * numFeatures);
+            System.arraycopy(rows.labels(), 0, labels, row, rows.size());
+            row += rows.size();
+        }
+        return new Dataset(features, labels, numFeatures);
+    }
+
+    // Splits [start, end) into ranges of roughly chunkSize bytes that each end right after a newline
+    private static List<long[]> splitRanges(FileChannel channel, long start, long end, long chunkSize) throws IOException {
+        List<long[]> ranges = new ArrayList<>();
+        while (start < end) {
+            long chunkEnd = end;
+            if (end - start > chunkSize) {
+                chunkEnd = CSVParser.nextLineStart(channel, start + chunkSize - 1, end);
+                // Only the line running past the target end can make the range too large to map
+                if (chunkEnd - start > MAX_MAPPING) {
+                    throw new IOException("Line crossing byte " + (start + chunkSize) + " is longer than "
+                            + (MAX_MAPPING - chunkSize) + " bytes");
                 }
             }
-        } catch (Exception e) {
-            throw new IOException("Error reading CSV file: " + e.getMessage());
+            ranges.add(new long[]{start, chunkEnd});
+            start = chunkEnd;
         }
+        return ranges;
+    }
+
+    public Dataset getDataset() {
+        return dataset;
     }
 
     public List<Instance<Double, Integer>> getInstances() {
-        return instances;
+        return dataset.asInstances();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,145 @@
+package DataProcessing.CSV;
+
+import DataProcessing.domain.Batch;
+import DataProcessing.domain.InstanceSource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+// Streams a CSV file batch by batch through a sliding memory-mapped window.
+// Heap use is one Batch per pass regardless of the file size.
+public class CSVInstanceSource implements InstanceSource {
+    private static final long WINDOW_SIZE = 1L << 26;
+
+    private final Path file;
+    private final boolean hasHeader;
+    private final int batchSize;
+    private final CSVParser parser;
+
+    // labelColumn is zero-based, -1 means the last column
+    public CSVInstanceSource(String fileName, boolean hasHeader, int labelColumn, int batchSize) throws IOException {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be greater than 0");
+        }
+        this.file = Paths.get(fileName);
+        this.hasHeader = hasHeader;
+        this.batchSize = batchSize;
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long dataStart = hasHeader ? CSVParser.nextLineStart(channel, 0, channel.size()) : 0;
+            this.parser = CSVParser.forFile(channel, dataStart, channel.size(), labelColumn);
+        }
+    }
+
+    @Override
+    public int numFeatures() {
+        return parser.numFeatures();
+    }
+
+    @Override
+    public int batchSize() {
+        return batchSize;
+    }
+
+    @Override
+    public Iterator<Batch> iterator() {
+        return new BatchIterator();
+    }
+
+    private class BatchIterator implements Iterator<Batch> {
+        private final Batch batch = new Batch(parser.numFeatures(), batchSize);
+        private MappedByteBuffer window;
+        private long windowStart;
+        private int windowLimit;
+        private int cursor;
+        private long fileSize = -1;
+        private long lineNumber;
+        private boolean filled;
+
+        @Override
+        public boolean hasNext() {
+            if (!filled) {
+                try {
+                    fill();
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Error reading CSV file: " + e.getMessage(), e);
+                }
+                filled = true;
+            }
+            return batch.size() > 0;
+        }
+
+        @Override
+        public Batch next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            filled = false;
+            return batch;
+        }
+
+        private void fill() throws IOException {
+            batch.clear();
+            while (!batch.isFull()) {
+                if (cursor >= windowLimit && !advanceWindow()) {
+                    return;
+                }
+
+                int lineEnd = cursor;
+                while (lineEnd < windowLimit && window.get(lineEnd) != '\n') {
+                    lineEnd++;
+                }
+                int next = lineEnd + 1;
+                if (lineEnd > cursor && window.get(lineEnd - 1) == '\r') {
+                    lineEnd--;
+                }
+                lineNumber++;
+
+                if (lineEnd > cursor && !(hasHeader && lineNumber == 1)) {
+                    try {
+                        int offset = batch.nextRowOffset();
+                        batch.commitRow(parser.parseRow(window, cursor, lineEnd, batch.features(), offset));
+                    } catch (IOException e) {
+                        throw new IOException("Line " + lineNumber + ": " + e.getMessage()
+                                + " in row: " + CSVParser.text(window, cursor, lineEnd), e);
+                    }
+                }
+                cursor = next;
+            }
+        }
+
+        // Maps the next window, cut after its last complete line; false at end of file
+        private boolean advanceWindow() throws IOException {
+            long position = windowStart + windowLimit;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                if (fileSize < 0) {
+                    fileSize = channel.size();
+                }
+                if (position >= fileSize) {
+                    return false;
+                }
+
+                long size = Math.min(WINDOW_SIZE, fileSize - position);
+                if (position + size < fileSize) {
+                    long end = CSVParser.nextLineStart(channel, position + size - 1, fileSize);
+                    size = end - position;
+                    if (size > Integer.MAX_VALUE) {
+                        throw new IOException("Line " + (lineNumber + 1) + " is longer than " + Integer.MAX_VALUE + " bytes");
+                    }
+                }
+                window = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+            }
+            windowStart = position;
+            windowLimit = window.limit();
+            cursor = 0;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package DataProcessing.CSV;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+// Parses delimited numeric rows straight from bytes into primitive arrays.
+// Nothing is allocated per cell; only values the fast path cannot represent exactly
+// (more than 15 significant digits, large exponents, NaN/Infinity) go through Double.parseDouble.
+class CSVParser {
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    private final int numColumns;
+    private final int labelColumn;
+    private final byte delimiter;
+
+    CSVParser(int numColumns, int labelColumn, byte delimiter) {
+        if (numColumns < 2) {
+            throw new IllegalArgumentException("Expected at least 2 columns but got " + numColumns);
+        }
+        if (labelColumn < 0 || labelColumn >= numColumns) {
+            throw new IllegalArgumentException("Label column " + labelColumn + " out of range for "
+                    + numColumns + " columns");
+        }
+        this.numColumns = numColumns;
+        this.labelColumn = labelColumn;
+        this.delimiter = delimiter;
+    }
+
+    int numColumns() {
+        return numColumns;
+    }
+
+    int numFeatures() {
+        return numColumns - 1;
+    }
+
+    // Parses the row in [from, to) writing the features to dst[offset..] and returns the label
+    int parseRow(ByteBuffer buffer, int from, int to, double[] dst, int offset) throws IOException {
+        int column = 0;
+        int start = from;
+        int label = 0;
+
+        for (int i = from; i <= to; i++) {
+            if (i < to && buffer.get(i) != delimiter) {
+                continue;
+            }
+            if (column >= numColumns) {
+                throw new IOException("Invalid file format: expected " + numColumns
+                        + " columns but got " + countColumns(buffer, from, to, delimiter));
+            }
+
+            double value = parseDouble(buffer, start, i);
+            if (column == labelColumn) {
+                label = (int) value;
+                if (label != value) {
+                    throw new IOException("Label must be an integer but got " + text(buffer, start, i));
+                }
+            } else {
+                dst[offset++] = value;
+            }
+            column++;
+            start = i + 1;
+        }
+
+        if (column != numColumns) {
+            throw new IOException("Invalid file format: expected " + numColumns + " columns but got " + column);
+        }
+        return label;
+    }
+
+    // Position just after the first newline at or after position, or end if there is none
+    static long nextLineStart(FileChannel channel, long position, long end) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        while (position < end) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return end;
+    }
+
+    // Derives the column count from the first non-empty data row
+    static CSVParser forFile(FileChannel channel, long dataStart, long fileSize, int labelColumn) throws IOException {
+        long position = dataStart;
+        while (position < fileSize) {
+            long lineEnd = nextLineStart(channel, position, fileSize);
+            MappedByteBuffer line = channel.map(FileChannel.MapMode.READ_ONLY, position, lineEnd - position);
+            int length = line.limit();
+            while (length > 0 && (line.get(length - 1) == '\n' || line.get(length - 1) == '\r')) {
+                length--;
+            }
+            if (length > 0) {
+                int numColumns = countColumns(line, 0, length, (byte) ',');
+                return new CSVParser(numColumns, labelColumn < 0 ? numColumns - 1 : labelColumn, (byte) ',');
+            }
+            position = lineEnd;
+        }
+        throw new IOException("File contains no data rows");
+    }
+
+    static int countColumns(ByteBuffer buffer, int from, int to, byte delimiter) {
+        int columns = 1;
+        for (int i = from; i < to; i++) {
+            if (buffer.get(i) == delimiter) {
+                columns++;
+            }
+        }
+        return columns;
+    }
+
+    static double parseDouble(ByteBuffer buffer, int from, int to) throws IOException {
+        // Trim surrounding whitespace
+        while (from < to && isWhitespace(buffer.get(from))) {
+            from++;
+        }
+        while (to > from && isWhitespace(buffer.get(to - 1))) {
+            to--;
+        }
+        if (from == to) {
+            throw new IOException("Empty value");
+        }
+
+        int i = from;
+        boolean negative = false;
+        byte b = buffer.get(i);
+        if (b == '-' || b == '+') {
+            negative = b == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int significantDigits = 0;
+        int exponent = 0;
+        boolean seenDot = false;
+
+        for (; i < to; i++) {
+            b = buffer.get(i);
+            if (b >= '0' && b <= '9') {
+                digits++;
+                if (mantissa == 0 && b == '0') {
+                    // Leading zeros are not significant
+                    if (seenDot) {
+                        exponent--;
+                    }
+                } else if (significantDigits < 18) {
+                    mantissa = mantissa * 10 + (b - '0');
+                    significantDigits++;
+                    if (seenDot) {
+                        exponent--;
+                    }
+                } else {
+                    // Digits beyond what a long can hold, let the slow path round them
+                    return parseSlow(buffer, from, to);
+                }
+            } else if (b == '.' && !seenDot) {
+                seenDot = true;
+            } else {
+                break;
+            }
+        }
+
+        if (digits == 0) {
+            return parseSlow(buffer, from, to);
+        }
+
+        if (i < to) {
+            if (b != 'e' && b != 'E') {
+                return parseSlow(buffer, from, to);
+            }
+            i++;
+            boolean negativeExponent = false;
+            if (i < to && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+                negativeExponent = buffer.get(i) == '-';
+                i++;
+            }
+            if (i == to) {
+                return parseSlow(buffer, from, to);
+            }
+            int explicitExponent = 0;
+            for (; i < to; i++) {
+                b = buffer.get(i);
+                if (b < '0' || b > '9' || explicitExponent > 100_000) {
+                    return parseSlow(buffer, from, to);
+                }
+                explicitExponent = explicitExponent * 10 + (b - '0');
+            }
+            exponent += negativeExponent ? -explicitExponent : explicitExponent;
+        }
+
+        double value;
+        if (mantissa == 0) {
+            value = 0.0;
+        } else if (mantissa < MAX_EXACT_MANTISSA && exponent >= -22 && exponent <= 22) {
+            // Both operands are exact doubles, so a single multiply/divide is correctly rounded
+            value = exponent >= 0 ? mantissa * POWERS_OF_TEN[exponent] : mantissa / POWERS_OF_TEN[-exponent];
+        } else {
+            return parseSlow(buffer, from, to);
+        }
+        return negative ? -value : value;
+    }
+
+    private static double parseSlow(ByteBuffer buffer, int from, int to) throws IOException {
+        String value = text(buffer, from, to);
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IOException("Error parsing numeric value: \"" + value + "\"");
+        }
+    }
+
+    static String text(ByteBuffer buffer, int from, int to) {
+        byte[] bytes = new byte[to - from];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(from + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r';
+    }
+}
@@ -0,0 +1,54 @@
+package DataProcessing.CSV;
+
+import DataProcessing.domain.Dataset;
+
+import java.util.Arrays;
+
+// Growable primitive storage that parsed rows are written into
+class RowBuffer {
+    private final int numFeatures;
+    private double[] features;
+    private int[] labels;
+    private int size;
+
+    RowBuffer(int numFeatures, int initialRows) {
+        this.numFeatures = numFeatures;
+        int capacity = Math.max(16, initialRows);
+        this.features = new double[capacity * numFeatures];
+        this.labels = new int[capacity];
+    }
+
+    // Reserves the next row and returns the offset its features must be written at
+    int nextRowOffset() {
+        if (size == labels.length) {
+            int capacity = labels.length + (labels.length >> 1);
+            labels = Arrays.copyOf(labels, capacity);
+            features = Arrays.copyOf(features, capacity * numFeatures);
+        }
+        return size * numFeatures;
+    }
+
+    // Commits the row reserved by nextRowOffset()
+    void commitRow(int label) {
+        labels[size++] = label;
+    }
+
+    int size() {
+        return size;
+    }
+
+    double[] features() {
+        return features;
+    }
+
+    int[] labels() {
+        return labels;
+    }
+
+    Dataset toDataset() {
+        double[] trimmedFeatures = features.length == size * numFeatures
+                ? features : Arrays.copyOf(features, size * numFeatures);
+        int[] trimmedLabels = labels.length == size ? labels : Arrays.copyOf(labels, size);
+        return new Dataset(trimmedFeatures, trimmedLabels, numFeatures);
+    }
+}
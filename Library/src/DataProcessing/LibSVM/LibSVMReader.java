@@ -0,0 +1,139 @@
+package DataProcessing.LibSVM;
+
+import DataProcessing.domain.SparseDataset;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+// Reads the sparse libsvm / svmlight text format straight into a SparseDataset:
+//   <label> <index>:<value> <index>:<value> ... [# comment]
+// one row per line, with 1-based feature indices in increasing order and omitted features being zero.
+// Labels must be integers (1.0 is accepted as 1); blank lines and lines starting with # are skipped.
+public class LibSVMReader {
+    private final String fileName;
+    private final int numFeatures;
+    private SparseDataset dataset;
+
+    public LibSVMReader(String fileName) throws IOException {
+        this(fileName, 0);
+    }
+
+    // numFeatures fixes the width, e.g. to match a training file; 0 takes the highest index in the file
+    public LibSVMReader(String fileName, int numFeatures) throws IOException {
+        if (numFeatures < 0) {
+            throw new IllegalArgumentException("Number of features cannot be negative");
+        }
+        this.fileName = fileName;
+        this.numFeatures = numFeatures;
+        readFile();
+    }
+
+    public void readFile() throws IOException {
+        int[] rowPointers = new int[1024];
+        int[] labels = new int[1024];
+        int[] columnIndices = new int[1 << 16];
+        double[] values = new double[1 << 16];
+        int numRows = 0;
+        int nonZeros = 0;
+        int maxIndex = 0;
+
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(fileName), StandardCharsets.UTF_8)) {
+            String line;
+            long lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                int end = line.indexOf('#');
+                if (end < 0) {
+                    end = line.length();
+                }
+                int position = skipSpaces(line, 0, end);
+                if (position == end) {
+                    continue;
+                }
+
+                try {
+                    int tokenEnd = tokenEnd(line, position, end);
+                    int label = parseLabel(line.substring(position, tokenEnd));
+                    if (numRows + 1 == rowPointers.length) {
+                        rowPointers = Arrays.copyOf(rowPointers, rowPointers.length * 2);
+                        labels = Arrays.copyOf(labels, labels.length * 2);
+                    }
+                    labels[numRows] = label;
+
+                    int previous = 0;
+                    position = skipSpaces(line, tokenEnd, end);
+                    while (position < end) {
+                        tokenEnd = tokenEnd(line, position, end);
+                        int colon = line.indexOf(':', position);
+                        if (colon < 0 || colon >= tokenEnd) {
+                            throw new IOException("Expected index:value but got \"" + line.substring(position, tokenEnd) + "\"");
+                        }
+                        int index = Integer.parseInt(line.substring(position, colon));
+                        if (index <= previous) {
+                            throw new IOException("Feature indices must be positive and increasing, got " + index
+                                    + " after " + previous);
+                        }
+                        if (numFeatures > 0 && index > numFeatures) {
+                            throw new IOException("Feature index " + index + " exceeds " + numFeatures + " features");
+                        }
+                        double value = Double.parseDouble(line.substring(colon + 1, tokenEnd));
+                        previous = index;
+                        // Explicit zeros carry no information in CSR form
+                        if (value != 0.0) {
+                            if (nonZeros == values.length) {
+                                columnIndices = Arrays.copyOf(columnIndices, nonZeros * 2);
+                                values = Arrays.copyOf(values, nonZeros * 2);
+                            }
+                            columnIndices[nonZeros] = index - 1;
+                            values[nonZeros++] = value;
+                        }
+                        maxIndex = Math.max(maxIndex, index);
+                        position = skipSpaces(line, tokenEnd, end);
+                    }
+                } catch (NumberFormatException e) {
+                    throw new IOException("Line " + lineNumber + ": Error parsing numeric value: " + e.getMessage(), e);
+                } catch (IOException e) {
+                    throw new IOException("Line " + lineNumber + ": " + e.getMessage(), e);
+                }
+                rowPointers[++numRows] = nonZeros;
+            }
+        }
+        if (numRows == 0) {
+            throw new IOException("File contains no data rows");
+        }
+
+        dataset = new SparseDataset(Arrays.copyOf(rowPointers, numRows + 1), Arrays.copyOf(columnIndices, nonZeros),
+                Arrays.copyOf(values, nonZeros), Arrays.copyOf(labels, numRows),
+                numFeatures > 0 ? numFeatures : Math.max(1, maxIndex));
+    }
+
+    private static int parseLabel(String text) throws IOException {
+        double value = Double.parseDouble(text);
+        if (value != Math.rint(value) || Math.abs(value) > Integer.MAX_VALUE) {
+            throw new IOException("Label must be an integer but got " + text);
+        }
+        return (int) value;
+    }
+
+    private static int skipSpaces(String line, int position, int end) {
+        while (position < end && Character.isWhitespace(line.charAt(position))) {
+            position++;
+        }
+        return position;
+    }
+
+    private static int tokenEnd(String line, int position, int end) {
+        while (position < end && !Character.isWhitespace(line.charAt(position))) {
+            position++;
+        }
+        return position;
+    }
+
+    public SparseDataset getDataset() {
+        return dataset;
+    }
+}
@@ -0,0 +1,70 @@
+package DataProcessing.domain;
+
+// Fixed-capacity block of rows handed out by an InstanceSource.
+// Sources refill the same Batch on every step, so copy anything that has to outlive it.
+public class Batch {
+    private final int numFeatures;
+    private final int capacity;
+    private final double[] features;
+    private final int[] labels;
+    private int size;
+
+    public Batch(int numFeatures, int capacity) {
+        if (numFeatures <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("Batch dimensions must be greater than 0");
+        }
+        this.numFeatures = numFeatures;
+        this.capacity = capacity;
+        this.features = new double[numFeatures * capacity];
+        this.labels = new int[capacity];
+    }
+
+    public int numFeatures() {
+        return numFeatures;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isFull() {
+        return size == capacity;
+    }
+
+    // Row-major features of the first size() rows
+    public double[] features() {
+        return features;
+    }
+
+    public int[] labels() {
+        return labels;
+    }
+
+    public int label(int row) {
+        return labels[row];
+    }
+
+    public int rowOffset(int row) {
+        return row * numFeatures;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    // Offset the next row's features must be written at; the row counts once commitRow is called
+    public int nextRowOffset() {
+        if (size == capacity) {
+            throw new IllegalStateException("Batch is full");
+        }
+        return size * numFeatures;
+    }
+
+    public void commitRow(int label) {
+        labels[size++] = label;
+    }
+}
@@ -0,0 +1,85 @@
+package DataProcessing.domain;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Maps the labels of List-based training data to the int class ids the models train on, and back.
+// When every label is a whole number its value is its id, so List and Dataset predictions agree;
+// otherwise (strings, 0.5, ...) labels are numbered 0, 1, ... in order of first appearance.
+// Predictions map back to the label objects seen in training, so a List<Long> gets Longs back.
+public class ClassLabels<L> {
+    private final int[] ids;
+    // Label object per class id, null for a model trained on a Dataset whose ids are Integer labels
+    private final Map<Integer, L> labels;
+    private final boolean numeric;
+
+    private ClassLabels(int[] ids, Map<Integer, L> labels, boolean numeric) {
+        this.ids = ids;
+        this.labels = labels;
+        this.numeric = numeric;
+    }
+
+    public static <F, L> ClassLabels<L> of(List<Instance<F, L>> instances) {
+        if (instances == null || instances.isEmpty()) {
+            throw new IllegalArgumentException("Instances cannot be null or empty");
+        }
+        int[] ids = new int[instances.size()];
+        boolean numeric = true;
+        for (int r = 0; r < ids.length && numeric; r++) {
+            Integer value = Dataset.integralLabel(instances.get(r).getOutput());
+            numeric = value != null;
+            ids[r] = numeric ? value : 0;
+        }
+
+        Map<Integer, L> labels = new HashMap<>();
+        Map<L, Integer> denseIds = new HashMap<>();
+        for (int r = 0; r < ids.length; r++) {
+            L label = instances.get(r).getOutput();
+            if (label == null) {
+                throw new IllegalArgumentException("Label of instance " + r + " cannot be null");
+            }
+            if (numeric) {
+                labels.putIfAbsent(ids[r], label);
+                continue;
+            }
+            Integer id = denseIds.get(label);
+            if (id == null) {
+                id = denseIds.size();
+                denseIds.put(label, id);
+                labels.put(id, label);
+            }
+            ids[r] = id;
+        }
+        return new ClassLabels<>(ids, labels, numeric);
+    }
+
+    // Mapping of a model trained on a Dataset, whose class ids are already its (Integer) labels
+    public static <L> ClassLabels<L> integers() {
+        return new ClassLabels<>(null, null, true);
+    }
+
+    // Class id of every training instance, in order
+    public int[] ids() {
+        return ids;
+    }
+
+    // True when the class ids are the label values themselves, as a Dataset or a saved model holds them
+    public boolean numeric() {
+        return numeric;
+    }
+
+    @SuppressWarnings("unchecked")
+    public L label(int id) {
+        return labels == null ? (L) Integer.valueOf(id) : labels.get(id);
+    }
+
+    public List<L> labels(int[] ids) {
+        List<L> result = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            result.add(label(id));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,89 @@
+package DataProcessing.domain;
+
+// Per-feature summary statistics of a dataset
+public class ColumnStats {
+    private final double[] min;
+    private final double[] max;
+    private final double[] mean;
+    private final double[] std;
+
+    public ColumnStats(double[] min, double[] max, double[] mean, double[] std) {
+        if (min.length != max.length || min.length != mean.length || min.length != std.length) {
+            throw new IllegalArgumentException("All statistics must cover the same number of features");
+        }
+        this.min = min;
+        this.max = max;
+        this.mean = mean;
+        this.std = std;
+    }
+
+    public static ColumnStats of(Dataset dataset) {
+        int numFeatures = dataset.numFeatures();
+        int numRows = dataset.numRows();
+        double[] columns = dataset.columnMajor();
+        double[] min = new double[numFeatures];
+        double[] max = new double[numFeatures];
+        double[] mean = new double[numFeatures];
+        double[] std = new double[numFeatures];
+
+        for (int j = 0; j < numFeatures; j++) {
+            int offset = dataset.columnOffset(j);
+            double lo = Double.POSITIVE_INFINITY;
+            double hi = Double.NEGATIVE_INFINITY;
+            double sum = 0.0;
+            for (int i = offset; i < offset + numRows; i++) {
+                lo = Math.min(lo, columns[i]);
+                hi = Math.max(hi, columns[i]);
+                sum += columns[i];
+            }
+            double average = numRows > 0 ? sum / numRows : 0.0;
+
+            double squaredSum = 0.0;
+            for (int i = offset; i < offset + numRows; i++) {
+                squaredSum += (columns[i] - average) * (columns[i] - average);
+            }
+
+            min[j] = lo;
+            max[j] = hi;
+            mean[j] = average;
+            std[j] = numRows > 0 ? Math.sqrt(squaredSum / numRows) : 0.0;
+        }
+        return new ColumnStats(min, max, mean, std);
+    }
+
+    public int numFeatures() {
+        return min.length;
+    }
+
+    public double[] min() {
+        return min.clone();
+    }
+
+    public double[] max() {
+        return max.clone();
+    }
+
+    public double[] mean() {
+        return mean.clone();
+    }
+
+    public double[] std() {
+        return std.clone();
+    }
+
+    public double min(int feature) {
+        return min[feature];
+    }
+
+    public double max(int feature) {
+        return max[feature];
+    }
+
+    public double mean(int feature) {
+        return mean[feature];
+    }
+
+    public double std(int feature) {
+        return std[feature];
+    }
+}
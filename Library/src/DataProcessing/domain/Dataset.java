@@ -0,0 +1,283 @@
+package DataProcessing.domain;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+// Numeric dataset stored in contiguous primitive arrays instead of boxed lists.
+// Features are kept row-major (row r occupies [r * numFeatures, (r + 1) * numFeatures))
+// and a column-major copy is built lazily the first time a column scan asks for it.
+// Building a missing layout is synchronized and published through a volatile field, so worker threads
+// may ask for either layout without the caller touching it first.
+public class Dataset {
+    private final int numRows;
+    private final int numFeatures;
+    private final int[] labels;
+    // At least one of the two is always set
+    private volatile double[] rowMajor;
+    private volatile double[] columnMajor;
+
+    public Dataset(double[] rowMajor, int[] labels, int numFeatures) {
+        this(rowMajor, null, labels, numFeatures);
+    }
+
+    private Dataset(double[] rowMajor, double[] columnMajor, int[] labels, int numFeatures) {
+        if (labels == null) {
+            throw new IllegalArgumentException("Labels cannot be null");
+        }
+        if (numFeatures <= 0) {
+            throw new IllegalArgumentException("Number of features must be greater than 0");
+        }
+        double[] features = rowMajor != null ? rowMajor : columnMajor;
+        if (features == null || features.length != (long) labels.length * numFeatures) {
+            throw new IllegalArgumentException("Feature array must hold exactly "
+                    + labels.length + " x " + numFeatures + " values");
+        }
+        this.rowMajor = rowMajor;
+        this.columnMajor = columnMajor;
+        this.labels = labels;
+        this.numRows = labels.length;
+        this.numFeatures = numFeatures;
+    }
+
+    // Wraps feature data that is already laid out column by column
+    public static Dataset fromColumns(double[] columnMajor, int[] labels, int numFeatures) {
+        return new Dataset(null, columnMajor, labels, numFeatures);
+    }
+
+    // Returns the dataset backing a list produced by asInstances(), otherwise copies the values.
+    // Features must be numbers and labels whole numbers within int range; see ClassLabels for others.
+    public static <F, L> Dataset of(List<Instance<F, L>> instances) {
+        List<?> list = instances;
+        if (list instanceof InstanceList) {
+            return ((InstanceList) list).dataset;
+        }
+        if (instances == null || instances.isEmpty()) {
+            throw new IllegalArgumentException("Instances cannot be null or empty");
+        }
+        int[] labels = new int[instances.size()];
+        for (int r = 0; r < labels.length; r++) {
+            Object label = instances.get(r).getOutput();
+            Integer value = integralLabel(label);
+            if (value == null) {
+                throw new IllegalArgumentException("Label of instance " + r
+                        + " must be a whole number within int range, found " + label);
+            }
+            labels[r] = value;
+        }
+        return of(instances, labels);
+    }
+
+    // Copies the features of the instances, with the given class id per instance as its label
+    public static <F, L> Dataset of(List<Instance<F, L>> instances, int[] labels) {
+        List<?> list = instances;
+        if (list instanceof InstanceList) {
+            Dataset dataset = ((InstanceList) list).dataset;
+            return new Dataset(dataset.rowMajor, dataset.columnMajor, labels, dataset.numFeatures);
+        }
+        if (instances == null || instances.isEmpty()) {
+            throw new IllegalArgumentException("Instances cannot be null or empty");
+        }
+        if (labels.length != instances.size()) {
+            throw new IllegalArgumentException("Expected " + instances.size() + " labels but got " + labels.length);
+        }
+
+        int numFeatures = instances.get(0).getInput().size();
+        double[] features = new double[instances.size() * numFeatures];
+
+        for (int r = 0; r < instances.size(); r++) {
+            Instance<F, L> instance = instances.get(r);
+            List<F> input = instance.getInput();
+            if (input.size() != numFeatures) {
+                throw new IllegalArgumentException("Instance " + r + " has " + input.size()
+                        + " features, expected " + numFeatures);
+            }
+
+            int offset = r * numFeatures;
+            if (input instanceof RowView) {
+                RowView row = (RowView) input;
+                System.arraycopy(row.values, row.offset, features, offset, numFeatures);
+            } else {
+                for (int j = 0; j < numFeatures; j++) {
+                    F value = input.get(j);
+                    if (!(value instanceof Number)) {
+                        throw new IllegalArgumentException("Feature " + j + " of instance " + r
+                                + " is not a number: " + value);
+                    }
+                    features[offset + j] = ((Number) value).doubleValue();
+                }
+            }
+        }
+        return new Dataset(features, labels, numFeatures);
+    }
+
+    // Value of a label that is a whole number within int range, otherwise null
+    static Integer integralLabel(Object label) {
+        if (label instanceof Integer) {
+            return (Integer) label;
+        }
+        if (!(label instanceof Number)) {
+            return null;
+        }
+        double value = ((Number) label).doubleValue();
+        if (value != Math.rint(value) || value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            return null;
+        }
+        return (int) value;
+    }
+
+    public int numRows() {
+        return numRows;
+    }
+
+    public int numFeatures() {
+        return numFeatures;
+    }
+
+    public double get(int row, int feature) {
+        double[] rows = rowMajor;
+        if (rows != null) {
+            return rows[row * numFeatures + feature];
+        }
+        return columnMajor[feature * numRows + row];
+    }
+
+    public int label(int row) {
+        return labels[row];
+    }
+
+    // Label column, shared with the dataset - do not modify
+    public int[] labels() {
+        return labels;
+    }
+
+    // Row-major feature matrix, shared with the dataset - do not modify
+    public double[] rowMajor() {
+        double[] rows = rowMajor;
+        if (rows == null) {
+            synchronized (this) {
+                rows = rowMajor;
+                if (rows == null) {
+                    rows = transpose(columnMajor, numFeatures, numRows);
+                    rowMajor = rows;
+                }
+            }
+        }
+        return rows;
+    }
+
+    // Column-major feature matrix, shared with the dataset - do not modify
+    public double[] columnMajor() {
+        double[] columns = columnMajor;
+        if (columns == null) {
+            synchronized (this) {
+                columns = columnMajor;
+                if (columns == null) {
+                    columns = transpose(rowMajor, numRows, numFeatures);
+                    columnMajor = columns;
+                }
+            }
+        }
+        return columns;
+    }
+
+    // Offset of the first feature of a row inside rowMajor()
+    public int rowOffset(int row) {
+        return row * numFeatures;
+    }
+
+    // Offset of the first value of a feature inside columnMajor()
+    public int columnOffset(int feature) {
+        return feature * numRows;
+    }
+
+    public double[] row(int row, double[] out) {
+        System.arraycopy(rowMajor(), row * numFeatures, out, 0, numFeatures);
+        return out;
+    }
+
+    // New dataset containing the given rows, in the given order
+    public Dataset subset(int[] rows) {
+        double[] source = rowMajor();
+        double[] features = new double[rows.length * numFeatures];
+        int[] subsetLabels = new int[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            System.arraycopy(source, rows[i] * numFeatures, features, i * numFeatures, numFeatures);
+            subsetLabels[i] = labels[rows[i]];
+        }
+        return new Dataset(features, subsetLabels, numFeatures);
+    }
+
+    public Dataset slice(int fromRow, int toRow) {
+        double[] features = Arrays.copyOfRange(rowMajor(), fromRow * numFeatures, toRow * numFeatures);
+        return new Dataset(features, Arrays.copyOfRange(labels, fromRow, toRow), numFeatures);
+    }
+
+    // Lightweight Instance whose input list reads straight from the feature array
+    public Instance<Double, Integer> instance(int row) {
+        return new Instance<>(new RowView(rowMajor(), row * numFeatures, numFeatures), labels[row]);
+    }
+
+    // Instance view over the whole dataset so List-based Model callers keep working
+    public List<Instance<Double, Integer>> asInstances() {
+        return new InstanceList(this);
+    }
+
+    private static double[] transpose(double[] source, int rows, int cols) {
+        double[] target = new double[source.length];
+        for (int r = 0; r < rows; r++) {
+            int offset = r * cols;
+            for (int c = 0; c < cols; c++) {
+                target[c * rows + r] = source[offset + c];
+            }
+        }
+        return target;
+    }
+
+    private static class InstanceList extends AbstractList<Instance<Double, Integer>> implements RandomAccess {
+        private final Dataset dataset;
+
+        InstanceList(Dataset dataset) {
+            this.dataset = dataset;
+        }
+
+        @Override
+        public Instance<Double, Integer> get(int index) {
+            if (index < 0 || index >= dataset.numRows) {
+                throw new IndexOutOfBoundsException("Row " + index + " out of " + dataset.numRows);
+            }
+            return dataset.instance(index);
+        }
+
+        @Override
+        public int size() {
+            return dataset.numRows;
+        }
+    }
+
+    private static class RowView extends AbstractList<Double> implements RandomAccess {
+        private final double[] values;
+        private final int offset;
+        private final int length;
+
+        RowView(double[] values, int offset, int length) {
+            this.values = values;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public Double get(int index) {
+            if (index < 0 || index >= length) {
+                throw new IndexOutOfBoundsException("Feature " + index + " out of " + length);
+            }
+            return values[offset + index];
+        }
+
+        @Override
+        public int size() {
+            return length;
+        }
+    }
+}
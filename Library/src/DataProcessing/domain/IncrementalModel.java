@@ -0,0 +1,8 @@
+package DataProcessing.domain;
+
+// Model that can learn from one batch at a time instead of needing the whole dataset
+public interface IncrementalModel {
+    void trainBatch(Batch batch);
+
+    void train(InstanceSource source);
+}
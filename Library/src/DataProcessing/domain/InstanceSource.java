@@ -0,0 +1,16 @@
+package DataProcessing.domain;
+
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+// Streams a dataset in fixed-size primitive batches so that it never has to be held in memory at once.
+// Every call to iterator() starts a new pass over the data; the returned Batch is reused between steps.
+public interface InstanceSource extends Iterable<Batch> {
+    int numFeatures();
+
+    int batchSize();
+
+    default Stream<Batch> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+}
@@ -5,4 +5,21 @@ import java.util.List;
 public interface Model<F, L>  {
     void train(List<Instance<F, L>> instances);
     List<L> test(List<Instance<F, L>> instances);
+
+    // Dataset variants; the default goes through the Instance view, models with
+    // a primitive path override these to work on the arrays directly
+    @SuppressWarnings("unchecked")
+    default void train(Dataset dataset) {
+        train((List<Instance<F, L>>) (List<?>) dataset.asInstances());
+    }
+
+    @SuppressWarnings("unchecked")
+    default int[] test(Dataset dataset) {
+        List<L> predictions = test((List<Instance<F, L>>) (List<?>) dataset.asInstances());
+        int[] result = new int[predictions.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = ((Number) predictions.get(i)).intValue();
+        }
+        return result;
+    }
 }
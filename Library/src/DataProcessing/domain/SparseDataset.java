@@ -0,0 +1,167 @@
+package DataProcessing.domain;
+
+import java.util.Arrays;
+
+// Dataset with mostly-zero features in compressed sparse row (CSR) form: the non-zeros of row r are
+// columnIndices[k] / values[k] for k in [rowPointers[r], rowPointers[r + 1]), with the column indices
+// of a row strictly increasing. Memory and scans scale with the number of non-zeros, not with
+// numRows * numFeatures, so one-hot and hashed text features with 100k+ columns stay practical.
+public class SparseDataset {
+    private final int numRows;
+    private final int numFeatures;
+    private final int[] rowPointers;
+    private final int[] columnIndices;
+    private final double[] values;
+    private final int[] labels;
+    private double[] squaredNorms;
+
+    public SparseDataset(int[] rowPointers, int[] columnIndices, double[] values, int[] labels, int numFeatures) {
+        if (rowPointers == null || columnIndices == null || values == null || labels == null) {
+            throw new IllegalArgumentException("Arrays cannot be null");
+        }
+        if (numFeatures <= 0) {
+            throw new IllegalArgumentException("Number of features must be greater than 0");
+        }
+        if (rowPointers.length != labels.length + 1 || rowPointers[0] != 0
+                || rowPointers[labels.length] != values.length || columnIndices.length != values.length) {
+            throw new IllegalArgumentException("Row pointers must run from 0 to the number of values, one per row plus one");
+        }
+        for (int r = 0; r < labels.length; r++) {
+            if (rowPointers[r + 1] < rowPointers[r]) {
+                throw new IllegalArgumentException("Row pointers must not decrease (row " + r + ")");
+            }
+            for (int k = rowPointers[r]; k < rowPointers[r + 1]; k++) {
+                int column = columnIndices[k];
+                if (column < 0 || column >= numFeatures || (k > rowPointers[r] && column <= columnIndices[k - 1])) {
+                    throw new IllegalArgumentException("Row " + r + " must have increasing column indices below "
+                            + numFeatures);
+                }
+            }
+        }
+        this.numRows = labels.length;
+        this.numFeatures = numFeatures;
+        this.rowPointers = rowPointers;
+        this.columnIndices = columnIndices;
+        this.values = values;
+        this.labels = labels;
+    }
+
+    // Keeps only the non-zero values of a dense dataset
+    public static SparseDataset fromDense(Dataset dataset) {
+        double[] rowMajor = dataset.rowMajor();
+        int numFeatures = dataset.numFeatures();
+        int nonZeros = 0;
+        for (double value : rowMajor) {
+            if (value != 0.0) {
+                nonZeros++;
+            }
+        }
+
+        int[] rowPointers = new int[dataset.numRows() + 1];
+        int[] columnIndices = new int[nonZeros];
+        double[] values = new double[nonZeros];
+        int k = 0;
+        for (int r = 0; r < dataset.numRows(); r++) {
+            int offset = dataset.rowOffset(r);
+            for (int j = 0; j < numFeatures; j++) {
+                if (rowMajor[offset + j] != 0.0) {
+                    columnIndices[k] = j;
+                    values[k++] = rowMajor[offset + j];
+                }
+            }
+            rowPointers[r + 1] = k;
+        }
+        return new SparseDataset(rowPointers, columnIndices, values, dataset.labels().clone(), numFeatures);
+    }
+
+    public int numRows() {
+        return numRows;
+    }
+
+    public int numFeatures() {
+        return numFeatures;
+    }
+
+    public int nonZeros() {
+        return values.length;
+    }
+
+    // Start of row's non-zeros in columnIndices() and values()
+    public int rowStart(int row) {
+        return rowPointers[row];
+    }
+
+    // End (exclusive) of row's non-zeros
+    public int rowEnd(int row) {
+        return rowPointers[row + 1];
+    }
+
+    public int[] rowPointers() {
+        return rowPointers;
+    }
+
+    public int[] columnIndices() {
+        return columnIndices;
+    }
+
+    public double[] values() {
+        return values;
+    }
+
+    public int[] labels() {
+        return labels;
+    }
+
+    public int label(int row) {
+        return labels[row];
+    }
+
+    public double get(int row, int feature) {
+        int position = Arrays.binarySearch(columnIndices, rowPointers[row], rowPointers[row + 1], feature);
+        return position >= 0 ? values[position] : 0.0;
+    }
+
+    // Sum of squares of each row's values, computed once on first use
+    public double[] squaredNorms() {
+        if (squaredNorms == null) {
+            double[] norms = new double[numRows];
+            for (int r = 0; r < numRows; r++) {
+                double sum = 0.0;
+                for (int k = rowPointers[r]; k < rowPointers[r + 1]; k++) {
+                    sum += values[k] * values[k];
+                }
+                norms[r] = sum;
+            }
+            squaredNorms = norms;
+        }
+        return squaredNorms;
+    }
+
+    // Same structure and labels with other values, e.g. rescaled ones
+    public SparseDataset withValues(double[] newValues) {
+        if (newValues.length != values.length) {
+            throw new IllegalArgumentException("Expected " + values.length + " values but got " + newValues.length);
+        }
+        return new SparseDataset(this, newValues);
+    }
+
+    private SparseDataset(SparseDataset structure, double[] values) {
+        this.numRows = structure.numRows;
+        this.numFeatures = structure.numFeatures;
+        this.rowPointers = structure.rowPointers;
+        this.columnIndices = structure.columnIndices;
+        this.values = values;
+        this.labels = structure.labels;
+    }
+
+    // Dense copy, only sensible when numRows * numFeatures fits in memory
+    public Dataset toDense() {
+        double[] rowMajor = new double[Math.multiplyExact(numRows, numFeatures)];
+        for (int r = 0; r < numRows; r++) {
+            for (int k = rowPointers[r]; k < rowPointers[r + 1]; k++) {
+                rowMajor[r * numFeatures + columnIndices[k]] = values[k];
+            }
+        }
+        return new Dataset(rowMajor, labels.clone(), numFeatures);
+    }
+}
@@ -1,5 +1,6 @@
 package Evaluation;
 
+import DataProcessing.domain.Dataset;
 import DataProcessing.domain.Instance;
 
 import java.util.List;
@@ -20,5 +21,22 @@ public class Accuracy<F, L> implements EvaluationMeasure<F, L> {
         }
         return (double) correct / instances.size();
     }
-}
 
+    public double evaluate(Dataset dataset, int[] predictions) {
+        return evaluate(dataset.labels(), predictions);
+    }
+
+    public double evaluate(int[] actual, int[] predictions) {
+        if (actual.length != predictions.length) {
+            throw new IllegalArgumentException("Number of instances and predictions must match");
+        }
+
+        long correct = 0;
+        for (int i = 0; i < actual.length; i++) {
+            if (actual[i] == predictions[i]) {
+                correct++;
+            }
+        }
+        return (double) correct / actual.length;
+    }
+}
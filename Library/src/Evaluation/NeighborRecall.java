@@ -0,0 +1,44 @@
+package Evaluation;
+
+import DataProcessing.domain.Dataset;
+import Models.KNNClassifier;
+import Models.neighbors.Neighbors;
+
+// Recall@k of an approximate KNN classifier: the share of the exact k nearest neighbours
+// that the approximate one also returns, averaged over the query rows
+public class NeighborRecall {
+
+    public double evaluate(KNNClassifier<?, ?> exact, KNNClassifier<?, ?> approximate, Dataset queries) {
+        if (queries == null || queries.numRows() == 0) {
+            throw new IllegalArgumentException("Queries cannot be null or empty");
+        }
+
+        double[] query = new double[queries.numFeatures()];
+        double total = 0.0;
+        for (int r = 0; r < queries.numRows(); r++) {
+            queries.row(r, query);
+            Neighbors expected = exact.kNeighbors(query);
+            Neighbors actual = approximate.kNeighbors(query);
+            if (expected.size() == 0) {
+                total += 1.0;
+                continue;
+            }
+
+            int found = 0;
+            for (int i = 0; i < expected.size(); i++) {
+                for (int j = 0; j < actual.size(); j++) {
+                    if (actual.index(j) == expected.index(i)) {
+                        found++;
+                        break;
+                    }
+                }
+            }
+            total += (double) found / expected.size();
+        }
+        return total / queries.numRows();
+    }
+
+    public static String formatAsPercentage(double recall) {
+        return String.format("%.2f%%", recall * 100);
+    }
+}
@@ -1,5 +1,6 @@
 package Evaluation;
 
+import DataProcessing.domain.Dataset;
 import DataProcessing.domain.Instance;
 
 import java.util.List;
@@ -34,4 +35,34 @@ public class Precision<F, L> implements EvaluationMeasure<F, L> {
 
         return (double) truePositives / (truePositives + falsePositives);
     }
+
+    public double evaluate(Dataset dataset, int[] predictions) {
+        return evaluate(dataset.labels(), predictions);
+    }
+
+    public double evaluate(int[] actual, int[] predictions) {
+        if (actual.length != predictions.length) {
+            throw new IllegalArgumentException("Number of instances and predictions must match");
+        }
+
+        long truePositives = 0;
+        long falsePositives = 0;
+
+        for (int i = 0; i < actual.length; i++) {
+            if (predictions[i] == 1) {
+                if (actual[i] == 1) {
+                    truePositives++;
+                } else {
+                    falsePositives++;
+                }
+            }
+        }
+
+        // Avoid division by zero
+        if (truePositives + falsePositives == 0) {
+            return 0.0;
+        }
+
+        return (double) truePositives / (truePositives + falsePositives);
+    }
 }
\ No newline at end of file
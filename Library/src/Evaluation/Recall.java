@@ -49,6 +49,51 @@ public class Recall {
         return (double) truePositives / (truePositives + falseNegatives);
     }
 
+    public static double calculate(int[] predictions, int[] actual) {
+        if (predictions == null || actual == null) {
+            throw new IllegalArgumentException("Input arrays cannot be null");
+        }
+
+        if (predictions.length != actual.length) {
+            throw new IllegalArgumentException("Predictions and actual values must have the same size");
+        }
+
+        if (predictions.length == 0) {
+            throw new IllegalArgumentException("Input arrays cannot be empty");
+        }
+
+        int truePositives = 0;
+        int falseNegatives = 0;
+
+        for (int i = 0; i < predictions.length; i++) {
+            int predicted = predictions[i];
+            int actualValue = actual[i];
+
+            // Validate input values
+            if (predicted != 0 && predicted != 1) {
+                throw new IllegalArgumentException("Prediction values must be 0 or 1");
+            }
+            if (actualValue != 0 && actualValue != 1) {
+                throw new IllegalArgumentException("Actual values must be 0 or 1");
+            }
+
+            if (actualValue == 1) {
+                if (predicted == 1) {
+                    truePositives++;
+                } else {
+                    falseNegatives++;
+                }
+            }
+        }
+
+        // Avoid division by zero
+        if (truePositives + falseNegatives == 0) {
+            return 0.0;
+        }
+
+        return (double) truePositives / (truePositives + falseNegatives);
+    }
+
     public static String formatAsPercentage(double recall) {
         return String.format("%.2f%%", recall * 100);
     }
@@ -2,195 +2,743 @@ package Models;
 
 
 import DataProcessing.CSV.CSVConvert;
+import DataProcessing.domain.ClassLabels;
+import DataProcessing.domain.Dataset;
 import DataProcessing.domain.Instance;
 import DataProcessing.domain.Model;
+import Models.persistence.ModelFile;
+import Models.persistence.ModelType;
+import Models.tree.FeatureBins;
+import Models.tree.FlatTree;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.stream.Collectors;
 
-public class DecisionTree<F, L> implements Model<F, L> {
-    private Node root;
+// Features must be numeric; labels may be of any type, see ClassLabels
+public class DecisionTree<F extends Number, L> implements Model<F, L> {
+    // Nodes with at least this many rows build their children as separate tasks
+    private static final int PARALLEL_SUBTREE_ROWS = 1 << 12;
+    // Nodes with at least this many rows search (or count) their features in parallel
+    private static final int PARALLEL_FEATURE_ROWS = 1 << 14;
+    // Golden-ratio increment of SplitMix64, used to derive the children's seeds from their parent's
+    private static final long SEED_STEP = 0x9E3779B97F4A7C15L;
+
+    // The trained tree, compacted breadth-first for prediction
+    private FlatTree tree;
+    private int numFeatures;
+    // Maps the tree's class ids back to the training labels
+    private ClassLabels<L> classLabels = ClassLabels.integers();
     private CSVConvert CSV;
+    private final int maxDepth;
+    private final int minSamplesLeaf;
+    private final double minGain;
+    // 0 for exact splits, otherwise the maximum number of bins per feature in histogram mode
+    private int histogramBins;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    // Features drawn for each node's split search, 0 for all of them
+    private int maxFeatures;
+    private long seed = 42;
+
+    public DecisionTree() {
+        this(Integer.MAX_VALUE, 1, 0.0);
+    }
+
+    // maxDepth caps the number of splits from the root to any leaf, every leaf keeps at least
+    // minSamplesLeaf training rows, and a split must gain more than minGain bits of information
+    public DecisionTree(int maxDepth, int minSamplesLeaf, double minGain) {
+        if (maxDepth < 0) {
+            throw new IllegalArgumentException("Max depth cannot be negative");
+        }
+        if (minSamplesLeaf < 1) {
+            throw new IllegalArgumentException("Min samples per leaf must be at least 1");
+        }
+        if (minGain < 0) {
+            throw new IllegalArgumentException("Min gain cannot be negative");
+        }
+        this.maxDepth = maxDepth;
+        this.minSamplesLeaf = minSamplesLeaf;
+        this.minGain = minGain;
+    }
 
+    // Switches to histogram mode: features are quantized once into at most bins byte-coded bins and
+    // splits are searched over per-bin class counts instead of sorted rows. 0 restores exact splits.
+    public void setHistogramBins(int bins) {
+        if (bins != 0 && (bins < 2 || bins > FeatureBins.MAX_BINS)) {
+            throw new IllegalArgumentException("Number of bins must be 0 or between 2 and " + FeatureBins.MAX_BINS);
+        }
+        this.histogramBins = bins;
+    }
+
+    // Number of threads used to build the tree, 1 builds on the calling thread.
+    // The tree is the same for every setting: splits are chosen as in a sequential build,
+    // ties going to the lowest feature index and then the lowest threshold.
+    public void setParallelism(int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Parallelism must be greater than 0");
+        }
+        this.parallelism = parallelism;
+    }
+
+
+    // Searches each node's split over maxFeatures features drawn at random, as in a random forest;
+    // 0 searches all of them. The draw depends only on the seed and the node's place in the tree.
+    public void setMaxFeatures(int maxFeatures) {
+        if (maxFeatures < 0) {
+            throw new IllegalArgumentException("Max features cannot be negative");
+        }
+        this.maxFeatures = maxFeatures;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
 
     @Override
     public void train(List<Instance<F, L>> instances) {
+        ClassLabels<L> labels = ClassLabels.of(instances);
+        train(Dataset.of(instances, labels.ids()));
+        this.classLabels = labels;
+    }
+
+    @Override
+    public void train(Dataset dataset) {
+        if (dataset == null || dataset.numRows() == 0) {
+            throw new IllegalArgumentException("Training data cannot be null or empty");
+        }
+        train(dataset, null, null);
+        this.classLabels = ClassLabels.integers();
+    }
+
+    // Trains on the listed rows of the dataset only. A row listed more than once counts once per
+    // occurrence, so a bootstrap sample is passed as its index array without copying any features.
+    public void train(Dataset dataset, int[] sample) {
+        if (dataset == null || sample == null || sample.length == 0) {
+            throw new IllegalArgumentException("Training data cannot be null or empty");
+        }
+        for (int row : sample) {
+            if (row < 0 || row >= dataset.numRows()) {
+                throw new IllegalArgumentException("Row index out of range: " + row);
+            }
+        }
+        train(dataset, null, sample.clone());
+    }
+
+    // sharedBins, when given, replaces the bins histogram mode would compute (the forest bins its
+    // data once for all trees); a null sample trains on every row
+    void train(Dataset dataset, FeatureBins sharedBins, int[] sample) {
         // Implementation of decision tree training
-        List<List<F>> inputs = instances.stream()
-                .map(Instance::getInput)
-                .collect(Collectors.toList());
-        List<L> outputs = instances.stream()
-                .map(Instance::getOutput)
-                .collect(Collectors.toList());
+        FeatureBins bins = sharedBins != null ? sharedBins
+                : histogramBins > 0 ? new FeatureBins(dataset, histogramBins) : null;
+        Builder builder = new Builder(dataset, bins, sample);
+        Node root;
+        if (parallelism == 1) {
+            root = builder.build();
+        } else {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                builder.parallel = true;
+                root = pool.invoke(ForkJoinTask.adapt((Callable<Node>) builder::build));
+            } finally {
+                pool.shutdown();
+            }
+        }
+        this.tree = flatten(root);
+        this.numFeatures = dataset.numFeatures();
+    }
+
+    // Numbers the nodes breadth-first and copies them into the arrays of a FlatTree.
+    // The two children of a node are queued together, so siblings are always adjacent.
+    private static FlatTree flatten(Node root) {
+        List<Node> order = new ArrayList<>();
+        order.add(root);
+        for (int i = 0; i < order.size(); i++) {
+            Node node = order.get(i);
+            if (!node.isLeaf) {
+                order.add(node.left);
+                order.add(node.right);
+            }
+        }
 
-        this.root = buildTree(inputs, outputs, 0);
+        int numNodes = order.size();
+        int[] feature = new int[numNodes];
+        double[] threshold = new double[numNodes];
+        int[] left = new int[numNodes];
+        int[] right = new int[numNodes];
+        int[] leafClass = new int[numNodes];
+        int nextChild = 1;
+        for (int i = 0; i < numNodes; i++) {
+            Node node = order.get(i);
+            if (node.isLeaf) {
+                threshold[i] = Double.NaN;
+                left[i] = i;
+                right[i] = i;
+                leafClass[i] = node.prediction;
+            } else {
+                feature[i] = node.splitFeature;
+                threshold[i] = node.splitValue;
+                left[i] = nextChild;
+                right[i] = nextChild + 1;
+                nextChild += 2;
+            }
+        }
+        return new FlatTree(feature, threshold, left, right, leafClass);
     }
 
     @Override
     public List<L> test(List<Instance<F, L>> instances) {
         return instances.stream()
-                .map(instance -> predict(instance.getInput()))
+                .map(instance -> classLabels.label(predict(instance.getInput())))
                 .collect(Collectors.toList());
     }
 
-    private L predict(List<F> input) {
-        // Implementation of prediction logic
-        return traverseTree(input, root);
+    @Override
+    public int[] test(Dataset dataset) {
+        checkTrained(dataset.numFeatures());
+        int[] predictions = new int[dataset.numRows()];
+        tree.predict(dataset.rowMajor(), 0, numFeatures, predictions.length, predictions, 0);
+        return predictions;
     }
 
-    private Node buildTree(List<List<F>> inputs, List<L> outputs, int depth) {
-        List<List<Double>> doubleFeatures = convertToDouble(inputs);
-        List<Integer> intLabels = convertToInteger(outputs);
+    // The trained tree, null before training
+    FlatTree flatTree() {
+        return tree;
+    }
 
-        // Find the best split
-        SplitInfo bestSplit = findBestSplit(doubleFeatures, intLabels);
+    // Class of one row of the training width starting at offset
+    public int predict(double[] features, int offset) {
+        checkTrained(numFeatures);
+        return tree.predict(features, offset);
+    }
 
-        // If no good split found, create leaf node
-        if (bestSplit.gainValue <= 0) {
-            return new Node(getMajorityClass(outputs));
+    // Classes of count row-major rows of the training width, written to out[0..count-1]
+    public void predict(double[] rows, int count, int[] out) {
+        checkTrained(numFeatures);
+        if (rows.length < count * numFeatures || out.length < count) {
+            throw new IllegalArgumentException("Arrays are too short for " + count + " rows");
         }
+        tree.predict(rows, 0, numFeatures, count, out, 0);
+    }
 
-        // Split the data
-        List<Integer> leftIndices = new ArrayList<>();
-        List<Integer> rightIndices = new ArrayList<>();
+    // Writes the stopping rules and the flattened node arrays to a ModelFile; training-only settings
+    // (histogram bins, max features, seed, parallelism) are not kept. Only whole-number labels are stored.
+    public void save(Path file) throws IOException {
+        checkTrained(numFeatures);
+        if (!classLabels.numeric()) {
+            throw new IllegalStateException("Only models trained on whole-number labels can be saved");
+        }
+        int numNodes = tree.numNodes();
+        int[] feature = new int[numNodes];
+        double[] threshold = new double[numNodes];
+        int[] left = new int[numNodes];
+        int[] right = new int[numNodes];
+        int[] leafClass = new int[numNodes];
+        for (int node = 0; node < numNodes; node++) {
+            feature[node] = tree.feature(node);
+            threshold[node] = tree.threshold(node);
+            left[node] = tree.left(node);
+            right[node] = tree.right(node);
+            leafClass[node] = tree.leafClass(node);
+        }
+        ModelFile.write(file, ModelType.DECISION_TREE,
+                new int[]{maxDepth, minSamplesLeaf, numFeatures},
+                new double[]{minGain},
+                feature, threshold, left, right, leafClass);
+    }
 
-        for (int i = 0; i < inputs.size(); i++) {
-            double value = ((Number) inputs.get(i).get(bestSplit.feature)).doubleValue();
-            if (value < bestSplit.splitValue) {
-                leftIndices.add(i);
-            } else {
-                rightIndices.add(i);
+    // Reads a tree written by save(), ready to predict
+    public static DecisionTree<Double, Integer> load(Path file) throws IOException {
+        ModelFile model = ModelFile.open(file, ModelType.DECISION_TREE);
+        int[] settings = model.ints(0);
+        double[] minGain = model.doubles(1);
+        if (settings.length != 3 || minGain.length != 1 || settings[2] <= 0) {
+            throw model.corrupt("invalid settings");
+        }
+        int[] feature = model.ints(2);
+        for (int node = 0; node < feature.length; node++) {
+            if (feature[node] >= settings[2]) {
+                throw model.corrupt("node " + node + " splits on a feature beyond " + settings[2]);
             }
         }
 
-        // Create child nodes
-        List<List<F>> leftInputs = getSubset(inputs, leftIndices);
-        List<L> leftOutputs = getSubset(outputs, leftIndices);
-        List<List<F>> rightInputs = getSubset(inputs, rightIndices);
-        List<L> rightOutputs = getSubset(outputs, rightIndices);
+        try {
+            DecisionTree<Double, Integer> decisionTree = new DecisionTree<>(settings[0], settings[1], minGain[0]);
+            decisionTree.tree = new FlatTree(feature, model.doubles(3), model.ints(4), model.ints(5), model.ints(6));
+            decisionTree.numFeatures = settings[2];
+            return decisionTree;
+        } catch (IllegalArgumentException e) {
+            throw model.corrupt(e.getMessage());
+        }
+    }
 
-        Node leftChild = buildTree(leftInputs, leftOutputs, depth + 1);
-        Node rightChild = buildTree(rightInputs, rightOutputs, depth + 1);
+    private int predict(List<F> input) {
+        // Implementation of prediction logic
+        checkTrained(input.size());
+        return tree.predict(input);
+    }
 
-        @SuppressWarnings("unchecked")
-        F splitValue = (F) Double.valueOf(bestSplit.splitValue);
-        return new Node(splitValue, bestSplit.feature, leftChild, rightChild);
+    private void checkTrained(int features) {
+        if (tree == null) {
+            throw new IllegalStateException("Model has not been trained");
+        }
+        if (features != numFeatures) {
+            throw new IllegalArgumentException("Expected " + numFeatures + " features but found " + features);
+        }
     }
 
-    private L traverseTree(List<F> input, Node node) {
-        // Step 1: Base case - if we've reached a leaf node
-        if (node.prediction != null) {
-            return node.prediction;
+    // State of one training run. All nodes share a single row index array: a node owns the range
+    // [from, to) of it and partitions that range in place between its children. Nodes still to be
+    // built wait on an explicit stack instead of the call stack, so depth is not limited by recursion.
+    private class Builder {
+        final Dataset data;
+        final double[] columns;
+        // Histogram mode only
+        final FeatureBins bins;
+        final HistogramLayout layout;
+        final int[] rows;
+        // Labels mapped to dense class ids 0..numClasses-1 for the count arrays, and back
+        final int[] classIds;
+        final int[] classLabels;
+        // Every feature index, searched at each node when maxFeatures is 0
+        final int[] allFeatures;
+        // Sort buffers for exact split search, one pair per thread
+        final ThreadLocal<double[]> sortValues;
+        final ThreadLocal<int[]> sortClasses;
+        // True when the build runs inside a fork-join pool
+        boolean parallel;
+
+        Builder(Dataset data, FeatureBins bins, int[] sample) {
+            this.data = data;
+            this.bins = bins;
+            int[] labels = data.labels();
+            this.classLabels = Arrays.stream(labels).distinct().sorted().toArray();
+            this.classIds = new int[labels.length];
+            for (int i = 0; i < labels.length; i++) {
+                classIds[i] = Arrays.binarySearch(classLabels, labels[i]);
+            }
+            if (sample != null) {
+                this.rows = sample;
+            } else {
+                this.rows = new int[data.numRows()];
+                for (int i = 0; i < rows.length; i++) {
+                    rows[i] = i;
+                }
+            }
+            this.allFeatures = new int[data.numFeatures()];
+            for (int i = 0; i < allFeatures.length; i++) {
+                allFeatures[i] = i;
+            }
+            this.columns = bins == null ? data.columnMajor() : null;
+            this.layout = bins == null ? null : new HistogramLayout(bins, classLabels.length);
+            this.sortValues = ThreadLocal.withInitial(() -> new double[rows.length]);
+            this.sortClasses = ThreadLocal.withInitial(() -> new int[rows.length]);
+        }
+
+        Node build() {
+            return buildSubtree(new Pending(0, rows.length, 0, seed, null, false,
+                    bins == null ? null : histogram(0, rows.length)));
+        }
+
+        // Builds the node of start and everything below it. Large children are handed to forked
+        // tasks, which attach their subtree to the parent before this method returns.
+        Node buildSubtree(Pending start) {
+            Deque<Pending> stack = new ArrayDeque<>();
+            List<ForkJoinTask<?>> forked = new ArrayList<>();
+            Node top = null;
+            stack.push(start);
+
+            while (!stack.isEmpty()) {
+                Pending item = stack.pop();
+                Node node = buildNode(item, stack, forked);
+                if (item.parent == null) {
+                    top = node;
+                } else if (item.isLeft) {
+                    item.parent.left = node;
+                } else {
+                    item.parent.right = node;
+                }
+            }
+            for (ForkJoinTask<?> task : forked) {
+                task.join();
+            }
+            return top;
         }
 
-        // Step 2: Get the feature value we need to check for this node
-        F featureValue = input.get(node.splitFeature);
+        // Turns item into a leaf, or into a split node whose children are queued
+        private Node buildNode(Pending item, Deque<Pending> stack, List<ForkJoinTask<?>> forked) {
+            int from = item.from;
+            int to = item.to;
+            if (item.depth >= maxDepth || to - from < 2 * minSamplesLeaf) {
+                return new Node(getMajorityClass(from, to));
+            }
 
-        // Step 3: Compare the feature value with the node's split value
-        // We need to cast to make the comparison
-        // Note: This assumes F is a comparable type like Double
-        double inputValue = ((Number) featureValue).doubleValue();
-        double splitValue = ((Number) node.splitValue).doubleValue();
+            // Find the best split
+            int[] features = selectFeatures(item.seed);
+            SplitInfo bestSplit = bins == null ? findBestSplit(from, to, features)
+                    : findBestHistogramSplit(from, to, item.histogram, features);
 
-        // Step 4: Traverse left or right based on comparison
-        if (inputValue < splitValue) {
-            return traverseTree(input, node.left);
-        } else {
-            return traverseTree(input, node.right);
+            // If no good split found, create leaf node
+            if (bestSplit.feature < 0 || bestSplit.gainValue <= minGain) {
+                return new Node(getMajorityClass(from, to));
+            }
+
+            // Split the rows in place
+            int mid = bins == null ? partition(from, to, bestSplit) : partitionBins(from, to, bestSplit);
+            int[] leftHistogram = null;
+            int[] rightHistogram = null;
+            if (bins != null) {
+                // Count the smaller child and derive the larger one from the parent
+                boolean leftSmaller = mid - from <= to - mid;
+                int[] smaller = leftSmaller ? histogram(from, mid) : histogram(mid, to);
+                int[] larger = item.histogram;
+                for (int i = 0; i < larger.length; i++) {
+                    larger[i] -= smaller[i];
+                }
+                leftHistogram = leftSmaller ? smaller : larger;
+                rightHistogram = leftSmaller ? larger : smaller;
+            }
+
+            Node node = new Node(bestSplit.splitValue, bestSplit.feature);
+            push(new Pending(mid, to, item.depth + 1, mix(item.seed + 2 * SEED_STEP), node, false, rightHistogram),
+                    stack, forked);
+            push(new Pending(from, mid, item.depth + 1, mix(item.seed + SEED_STEP), node, true, leftHistogram),
+                    stack, forked);
+            return node;
         }
-    }
 
-    private SplitInfo findBestSplit(List<List<Double>> features, List<Integer> labels) {
-        SplitInfo bestSplit = new SplitInfo(-1, 0.0, Double.NEGATIVE_INFINITY);
+        // The features searched at a node, in ascending order so ties still go to the lowest index
+        private int[] selectFeatures(long nodeSeed) {
+            if (maxFeatures == 0 || maxFeatures >= allFeatures.length) {
+                return allFeatures;
+            }
+            // Partial Fisher-Yates shuffle of the feature indices
+            int[] features = allFeatures.clone();
+            SplittableRandom random = new SplittableRandom(nodeSeed);
+            for (int i = 0; i < maxFeatures; i++) {
+                int j = i + random.nextInt(features.length - i);
+                int feature = features[i];
+                features[i] = features[j];
+                features[j] = feature;
+            }
+            int[] selected = Arrays.copyOf(features, maxFeatures);
+            Arrays.sort(selected);
+            return selected;
+        }
 
-        // For each feature
-        for (int feature = 0; feature < features.get(0).size(); feature++) {
-            // Get unique values for the feature
-            Set<Double> uniqueValues = new TreeSet<>();
-            for (List<Double> instance : features) {
-                uniqueValues.add(instance.get(feature));
+        private void push(Pending child, Deque<Pending> stack, List<ForkJoinTask<?>> forked) {
+            if (parallel && child.to - child.from >= PARALLEL_SUBTREE_ROWS) {
+                forked.add(ForkJoinTask.adapt(() -> {
+                    Node node = buildSubtree(new Pending(child.from, child.to, child.depth, child.seed, null, false,
+                            child.histogram));
+                    if (child.isLeft) {
+                        child.parent.left = node;
+                    } else {
+                        child.parent.right = node;
+                    }
+                }).fork());
+            } else {
+                stack.push(child);
             }
+        }
+
+        // Moves the rows going left to the front of [from, to) and returns where the right ones start
+        private int partition(int from, int to, SplitInfo split) {
+            int offset = data.columnOffset(split.feature);
+            int i = from;
+            int j = to - 1;
+            while (i <= j) {
+                if (columns[offset + rows[i]] < split.splitValue) {
+                    i++;
+                } else {
+                    int row = rows[i];
+                    rows[i] = rows[j];
+                    rows[j--] = row;
+                }
+            }
+            return i;
+        }
+
+        // Same as partition on the bin codes: code <= bin is the same as value < threshold
+        private int partitionBins(int from, int to, SplitInfo split) {
+            byte[] codes = bins.codes();
+            int offset = bins.columnOffset(split.feature);
+            int i = from;
+            int j = to - 1;
+            while (i <= j) {
+                if ((codes[offset + rows[i]] & 0xFF) <= split.bin) {
+                    i++;
+                } else {
+                    int row = rows[i];
+                    rows[i] = rows[j];
+                    rows[j--] = row;
+                }
+            }
+            return i;
+        }
+
+        // Sorts the node's values once per feature and sweeps the thresholds left to right, moving one
+        // row at a time from the right class counts to the left ones: O(n log n) per feature per node.
+        // Large nodes search their features in parallel; the per-feature results are then compared in
+        // feature order, so the choice is the same as in the sequential loop.
+        private SplitInfo findBestSplit(int from, int to, int[] features) {
+            int[] parentCounts = countClasses(from, to);
+            double parentEntropy = calculateEntropy(parentCounts, to - from);
+            SplitInfo[] featureSplits = new SplitInfo[features.length];
+
+            if (parallel && to - from >= PARALLEL_FEATURE_ROWS) {
+                List<ForkJoinTask<?>> tasks = new ArrayList<>(features.length);
+                for (int i = 0; i < features.length; i++) {
+                    int index = i;
+                    tasks.add(ForkJoinTask.adapt(() -> {
+                        featureSplits[index] = findBestSplit(from, to, features[index], parentCounts, parentEntropy);
+                    }));
+                }
+                ForkJoinTask.invokeAll(tasks);
+            } else {
+                for (int i = 0; i < features.length; i++) {
+                    featureSplits[i] = findBestSplit(from, to, features[i], parentCounts, parentEntropy);
+                }
+            }
+
+            SplitInfo bestSplit = new SplitInfo(-1, 0.0, Double.NEGATIVE_INFINITY);
+            for (SplitInfo split : featureSplits) {
+                if (split.gainValue > bestSplit.gainValue) {
+                    bestSplit = split;
+                }
+            }
+            return bestSplit;
+        }
+
+        // Best split of one feature over the rows in [from, to)
+        private SplitInfo findBestSplit(int from, int to, int feature, int[] parentCounts, double parentEntropy) {
+            SplitInfo bestSplit = new SplitInfo(-1, 0.0, Double.NEGATIVE_INFINITY);
+            int count = to - from;
+            double[] values = sortValues.get();
+            int[] classes = sortClasses.get();
+            int[] leftCounts = new int[classLabels.length];
+            int[] rightCounts = parentCounts.clone();
+
+            // Get the sorted values for the feature, keeping each row's class alongside
+            int offset = data.columnOffset(feature);
+            for (int i = 0; i < count; i++) {
+                int row = rows[from + i];
+                values[i] = columns[offset + row];
+                classes[i] = classIds[row];
+            }
+            sortByValue(values, classes, 0, count);
 
             // Try each potential split point
-            Double[] values = uniqueValues.toArray(new Double[0]);
-            for (int i = 0; i < values.length - 1; i++) {
+            for (int i = 0; i < count - 1; i++) {
+                leftCounts[classes[i]]++;
+                rightCounts[classes[i]]--;
+                int leftSize = i + 1;
+                int rightSize = count - leftSize;
+                if (values[i] == values[i + 1] || leftSize < minSamplesLeaf || rightSize < minSamplesLeaf) {
+                    continue;
+                }
                 // Calculate split point as average between consecutive unique values
-                double splitValue = (values[i] + values[i + 1]) / 2.0;
+                double splitValue = FeatureBins.splitPoint(values[i], values[i + 1]);
 
                 // Calculate information gain for this split
-                double gain = calculateInformationGain(features, labels, feature, splitValue);
+                double gain = splitGain(parentEntropy, leftCounts, leftSize, rightCounts, rightSize);
 
                 // Update best split if this is better
                 if (gain > bestSplit.gainValue) {
                     bestSplit = new SplitInfo(feature, splitValue, gain);
                 }
             }
+            return bestSplit;
         }
 
-        return bestSplit;
-    }
+        // Same sweep as findBestSplit over the node's per-bin class counts
+        private SplitInfo findBestHistogramSplit(int from, int to, int[] histogram, int[] features) {
+            int numClasses = classLabels.length;
+            int count = to - from;
+            int[] parentCounts = countClasses(from, to);
+            double parentEntropy = calculateEntropy(parentCounts, count);
+
+            SplitInfo bestSplit = new SplitInfo(-1, 0.0, Double.NEGATIVE_INFINITY);
+            int[] leftCounts = new int[numClasses];
+            int[] rightCounts = new int[numClasses];
+            for (int feature : features) {
+                Arrays.fill(leftCounts, 0);
+                System.arraycopy(parentCounts, 0, rightCounts, 0, numClasses);
+                int leftSize = 0;
+
+                // Thresholds only fall after non-empty bins, empty ones would repeat the same partition
+                for (int bin = 0; bin < bins.numBins(feature) - 1; bin++) {
+                    int offset = layout.offset(feature, bin);
+                    int binSize = 0;
+                    for (int c = 0; c < numClasses; c++) {
+                        leftCounts[c] += histogram[offset + c];
+                        rightCounts[c] -= histogram[offset + c];
+                        binSize += histogram[offset + c];
+                    }
+                    leftSize += binSize;
+                    int rightSize = count - leftSize;
+                    if (binSize == 0 || leftSize < minSamplesLeaf || rightSize < minSamplesLeaf) {
+                        continue;
+                    }
+
+                    double gain = splitGain(parentEntropy, leftCounts, leftSize, rightCounts, rightSize);
+                    if (gain > bestSplit.gainValue) {
+                        bestSplit = new SplitInfo(feature, bins.threshold(feature, bin), gain);
+                        bestSplit.bin = bin;
+                    }
+                }
+            }
+            return bestSplit;
+        }
 
-    // Calculate information gain for a potential split
-    private double calculateInformationGain(List<List<Double>> features, List<Integer> labels,
-                                            int feature, double splitValue) {
-        // Calculate parent entropy
-        double parentEntropy = calculateEntropy(labels);
+        // Per-bin class counts of the rows in [from, to); every feature fills its own block,
+        // so large nodes count them in parallel
+        private int[] histogram(int from, int to) {
+            int[] histogram = new int[layout.size];
+            if (!parallel || to - from < PARALLEL_FEATURE_ROWS) {
+                layout.count(histogram, bins, rows, from, to, classIds, 0, bins.numFeatures());
+                return histogram;
+            }
 
-        // Split the data
-        List<Integer> leftLabels = new ArrayList<>();
-        List<Integer> rightLabels = new ArrayList<>();
+            List<ForkJoinTask<?>> tasks = new ArrayList<>(bins.numFeatures());
+            for (int feature = 0; feature < bins.numFeatures(); feature++) {
+                int f = feature;
+                tasks.add(ForkJoinTask.adapt(() -> layout.count(histogram, bins, rows, from, to, classIds, f, f + 1)));
+            }
+            ForkJoinTask.invokeAll(tasks);
+            return histogram;
+        }
 
-        for (int i = 0; i < features.size(); i++) {
-            if (features.get(i).get(feature) < splitValue) {
-                leftLabels.add(labels.get(i));
-            } else {
-                rightLabels.add(labels.get(i));
+        private int[] countClasses(int from, int to) {
+            int[] counts = new int[classLabels.length];
+            for (int i = from; i < to; i++) {
+                counts[classIds[rows[i]]]++;
             }
+            return counts;
         }
 
-        // Calculate weighted average entropy of children
-        double leftWeight = (double) leftLabels.size() / labels.size();
-        double rightWeight = (double) rightLabels.size() / labels.size();
+        // Most frequent label, ties go to the smaller label
+        private int getMajorityClass(int from, int to) {
+            int[] counts = countClasses(from, to);
+            int best = 0;
+            for (int c = 1; c < counts.length; c++) {
+                if (counts[c] > counts[best]) {
+                    best = c;
+                }
+            }
+            return classLabels[best];
+        }
+    }
 
-        double leftEntropy = calculateEntropy(leftLabels);
-        double rightEntropy = calculateEntropy(rightLabels);
+    // A node waiting to be built: its row range, depth, the seed of its feature draw, and the parent
+    // slot it goes into. In histogram mode it carries its per-bin class counts.
+    private static class Pending {
+        final int from;
+        final int to;
+        final int depth;
+        final long seed;
+        final Node parent;
+        final boolean isLeft;
+        final int[] histogram;
+
+        Pending(int from, int to, int depth, long seed, Node parent, boolean isLeft, int[] histogram) {
+            this.from = from;
+            this.to = to;
+            this.depth = depth;
+            this.seed = seed;
+            this.parent = parent;
+            this.isLeft = isLeft;
+            this.histogram = histogram;
+        }
+    }
 
-        // Calculate information gain
-        return parentEntropy - (leftWeight * leftEntropy + rightWeight * rightEntropy);
+    // SplitMix64 finalizer: a bijective scramble, so sibling seeds never collide
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
     }
 
-    // Calculate entropy for a set of labels
-    private double calculateEntropy(List<Integer> labels) {
-        if (labels.isEmpty()) return 0.0;
+    // Parent entropy minus the size-weighted entropy of the two sides
+    private double splitGain(double parentEntropy, int[] leftCounts, int leftSize, int[] rightCounts, int rightSize) {
+        double total = leftSize + rightSize;
+        double leftWeight = leftSize / total;
+        double rightWeight = rightSize / total;
+        return parentEntropy - (leftWeight * calculateEntropy(leftCounts, leftSize)
+                + rightWeight * calculateEntropy(rightCounts, rightSize));
+    }
 
-        // Count occurrences of each class
-        Map<Integer, Integer> counts = new HashMap<>();
-        for (Integer label : labels) {
-            counts.put(label, counts.getOrDefault(label, 0) + 1);
-        }
+    // Calculate entropy from the class counts of a set of labels
+    private double calculateEntropy(int[] counts, int totalCount) {
+        if (totalCount == 0) return 0.0;
 
         // Calculate entropy
         double entropy = 0.0;
-        int totalCount = labels.size();
 
-        for (int count : counts.values()) {
-            double probability = (double) count / totalCount;
-            entropy -= probability * log2(probability);
+        for (int count : counts) {
+            if (count > 0) {
+                double probability = (double) count / totalCount;
+                entropy -= probability * log2(probability);
+            }
         }
 
         return entropy;
     }
 
-    private L getMajorityClass(List<L> outputs) {
-        if (outputs.isEmpty()) return null;
+    // Sorts values[from, to) ascending and applies the same moves to classes
+    private static void sortByValue(double[] values, int[] classes, int from, int to) {
+        while (to - from > 16) {
+            // Three-way partition around the median of three, so runs of equal values are cheap
+            double pivot = medianOfThree(values[from], values[(from + to) >>> 1], values[to - 1]);
+            int lt = from;
+            int gt = to;
+            int i = from;
+            while (i < gt) {
+                if (values[i] < pivot) {
+                    swap(values, classes, lt++, i++);
+                } else if (values[i] > pivot) {
+                    swap(values, classes, i, --gt);
+                } else {
+                    i++;
+                }
+            }
+            // Recurse into the smaller side and loop on the larger one to bound the stack depth
+            if (lt - from < to - gt) {
+                sortByValue(values, classes, from, lt);
+                from = gt;
+            } else {
+                sortByValue(values, classes, gt, to);
+                to = lt;
+            }
+        }
+        for (int i = from + 1; i < to; i++) {
+            double value = values[i];
+            int cls = classes[i];
+            int j = i - 1;
+            while (j >= from && values[j] > value) {
+                values[j + 1] = values[j];
+                classes[j + 1] = classes[j];
+                j--;
+            }
+            values[j + 1] = value;
+            classes[j + 1] = cls;
+        }
+    }
 
-        Map<L, Long> counts = outputs.stream()
-                .collect(Collectors.groupingBy(o -> o, Collectors.counting()));
+    private static double medianOfThree(double a, double b, double c) {
+        return a < b ? (b < c ? b : Math.max(a, c)) : (a < c ? a : Math.max(b, c));
+    }
 
-        return counts.entrySet().stream()
-                .max(Map.Entry.comparingByValue())
-                .map(Map.Entry::getKey)
-                .orElse(outputs.get(0));
+    private static void swap(double[] values, int[] classes, int i, int j) {
+        double value = values[i];
+        values[i] = values[j];
+        values[j] = value;
+        int cls = classes[i];
+        classes[i] = classes[j];
+        classes[j] = cls;
     }
 
     // Helper method to calculate log base 2
@@ -198,46 +746,59 @@ public class DecisionTree<F, L> implements Model<F, L> {
         return Math.log(x) / Math.log(2);
     }
 
-    @SuppressWarnings("unchecked")
-    private List<List<Double>> convertToDouble(List<List<F>> inputs) {
-        return inputs.stream()
-                .map(list -> list.stream()
-                        .map(value -> ((Number) value).doubleValue())
-                        .collect(Collectors.toList()))
-                .collect(Collectors.toList());
-    }
-
-    @SuppressWarnings("unchecked")
-    private List<Integer> convertToInteger(List<L> outputs) {
-        return outputs.stream()
-                .map(value -> ((Number) value).intValue())
-                .collect(Collectors.toList());
-    }
-
-    private <T> List<T> getSubset(List<T> list, List<Integer> indices) {
-        return indices.stream()
-                .map(list::get)
-                .collect(Collectors.toList());
-    }
-
-    private class Node {
-        F splitValue;
+    private static class Node {
+        double splitValue;
         int splitFeature;
         Node left;
         Node right;
-        L prediction;
+        int prediction;
+        boolean isLeaf;
 
-        // Constructor for decision nodes
-        Node(F splitValue, int splitFeature, Node left, Node right) {
+        // Constructor for decision nodes, the children are attached once built
+        Node(double splitValue, int splitFeature) {
             this.splitValue = splitValue;
             this.splitFeature = splitFeature;
-            this.left = left;
-            this.right = right;
         }
 
         // Constructor for leaf nodes
-        Node(L prediction) {
+        Node(int prediction) {
             this.prediction = prediction;
+            this.isLeaf = true;
+        }
+    }
+
+    // Position of each (feature, bin) block of class counts in a flat histogram array
+    private static class HistogramLayout {
+        final int numClasses;
+        final int[] featureOffsets;
+        final int size;
+
+        HistogramLayout(FeatureBins bins, int numClasses) {
+            this.numClasses = numClasses;
+            this.featureOffsets = new int[bins.numFeatures()];
+            int offset = 0;
+            for (int feature = 0; feature < bins.numFeatures(); feature++) {
+                featureOffsets[feature] = offset;
+                offset += bins.numBins(feature) * numClasses;
+            }
+            this.size = offset;
+        }
+
+        int offset(int feature, int bin) {
+            return featureOffsets[feature] + bin * numClasses;
+        }
+
+        void count(int[] histogram, FeatureBins bins, int[] rows, int from, int to, int[] classIds,
+                   int fromFeature, int toFeature) {
+            byte[] codes = bins.codes();
+            for (int feature = fromFeature; feature < toFeature; feature++) {
+                int codeOffset = bins.columnOffset(feature);
+                int base = featureOffsets[feature];
+                for (int i = from; i < to; i++) {
+                    int row = rows[i];
+                    histogram[base + (codes[codeOffset + row] & 0xFF) * numClasses + classIds[row]]++;
+                }
+            }
         }
     }
 
@@ -245,6 +806,8 @@ public class DecisionTree<F, L> implements Model<F, L> {
         int feature;
         double splitValue;
         double gainValue;
+        // Last bin on the left side, histogram mode only
+        int bin = -1;
 
         SplitInfo(int feature, double splitValue, double gainValue) {
             this.feature = feature;
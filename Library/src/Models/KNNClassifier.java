@@ -1,23 +1,152 @@
 package Models;
 
+import DataProcessing.domain.ClassLabels;
+import DataProcessing.domain.Dataset;
 import DataProcessing.domain.Instance;
 import DataProcessing.domain.Model;
+import DataProcessing.domain.SparseDataset;
+import Models.neighbors.BruteForceIndex;
+import Models.neighbors.HNSWIndex;
+import Models.neighbors.IndexStats;
+import Models.neighbors.IndexType;
+import Models.neighbors.NeighborHeap;
+import Models.neighbors.NeighborIndex;
+import Models.neighbors.Neighbors;
+import Models.neighbors.Quantization;
+import Models.neighbors.QuantizedIndex;
+import Models.neighbors.SparseIndex;
+import Models.persistence.ModelFile;
+import Models.persistence.ModelType;
+import utils.DiabetesDistanceMetric;
 import utils.DistanceMetric;
+import utils.EuclideanDistance;
+import utils.ManhattanDistance;
+import utils.PrimitiveDistanceMetric;
+import utils.SparseCosineDistance;
+import utils.SparseDistanceMetric;
+import utils.SparseEuclideanDistance;
 
-import java.util.*;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 public class KNNClassifier<F, L> implements Model<F, L> {
-    private List<Instance<F, L>> trainingData;
+    // Queries handled by one task in a parallel test, and per block in tiled mode
+    private static final int QUERY_BLOCK = 64;
+    // Metrics save() can store, by their id in the model file
+    private static final int EUCLIDEAN = 1;
+    private static final int MANHATTAN = 2;
+    private static final int DIABETES = 3;
+    private static final int SPARSE_EUCLIDEAN = 4;
+    private static final int SPARSE_COSINE = 5;
+
+    // Only the labels and width of the training data are kept here, the rows live in the index
+    private int[] trainingLabels;
+    // Maps the class ids in trainingLabels back to the labels of train(List)
+    private ClassLabels<L> labels = ClassLabels.integers();
+    private int numFeatures;
+    // The training data itself, referenced (not copied) for save(); null when quantized storage dropped it
+    private Dataset trainingData;
+    private SparseDataset sparseTrainingData;
+    private List<List<F>> trainingRows;
     private final int k;
     private final DistanceMetric<F> distanceMetric;
+    // Set when the metric can work on the feature arrays directly
+    private final PrimitiveDistanceMetric primitiveMetric;
+    // Neighbour heap reused by every query made on the same thread
+    private final ThreadLocal<NeighborHeap> heaps;
+    private final ThreadLocal<NeighborHeap[]> blockHeaps;
+    private final IndexType indexType;
+    private NeighborIndex index;
+    // Set instead of index after train(SparseDataset)
+    private SparseIndex sparseIndex;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private int tileSize;
+    private int hnswM = HNSWIndex.DEFAULT_M;
+    private int hnswEfConstruction = HNSWIndex.DEFAULT_EF_CONSTRUCTION;
+    private int hnswEfSearch = HNSWIndex.DEFAULT_EF_SEARCH;
+    private Quantization quantization;
+    private int rerankCandidates;
 
     public KNNClassifier(int k, DistanceMetric<F> distanceMetric) {
+        this(k, distanceMetric, IndexType.BRUTE_FORCE);
+    }
+
+    // Tree indexes need a metric that implements PrimitiveDistanceMetric
+    public KNNClassifier(int k, DistanceMetric<F> distanceMetric, IndexType indexType) {
         if (k <= 0) {
             throw new IllegalArgumentException("K must be greater than 0");
         }
+        if (indexType != IndexType.BRUTE_FORCE && !(distanceMetric instanceof PrimitiveDistanceMetric)) {
+            throw new IllegalArgumentException(indexType + " requires a PrimitiveDistanceMetric");
+        }
+        this.indexType = indexType;
         this.k = k;
         this.distanceMetric = distanceMetric;
-        this.trainingData = new ArrayList<>();
+        this.primitiveMetric = distanceMetric instanceof PrimitiveDistanceMetric
+                ? (PrimitiveDistanceMetric) distanceMetric : null;
+        this.trainingRows = new ArrayList<>();
+        this.heaps = ThreadLocal.withInitial(() -> new NeighborHeap(k));
+        this.blockHeaps = ThreadLocal.withInitial(() -> {
+            NeighborHeap[] block = new NeighborHeap[QUERY_BLOCK];
+            for (int i = 0; i < block.length; i++) {
+                block[i] = new NeighborHeap(k);
+            }
+            return block;
+        });
+    }
+
+    // Number of threads test() predicts on, 1 predicts on the calling thread
+    public void setParallelism(int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Parallelism must be greater than 0");
+        }
+        this.parallelism = parallelism;
+    }
+
+    // Training rows per tile for brute-force search in test(Dataset), 0 disables tiling.
+    // Blocks of queries are scanned tile by tile so each tile stays in cache; applies from the next train().
+    public void setTileSize(int tileSize) {
+        if (tileSize < 0) {
+            throw new IllegalArgumentException("Tile size cannot be negative");
+        }
+        this.tileSize = tileSize;
+    }
+
+    // Graph parameters for IndexType.HNSW, applied from the next train(). Larger values raise recall:
+    // m is the number of links per node, efConstruction and efSearch the candidates kept while
+    // building and querying; efSearch has the largest effect on query time.
+    public void setHnswParameters(int m, int efConstruction, int efSearch) {
+        if (m < 2) {
+            throw new IllegalArgumentException("M must be at least 2");
+        }
+        if (efConstruction <= 0 || efSearch <= 0) {
+            throw new IllegalArgumentException("ef values must be greater than 0");
+        }
+        this.hnswM = m;
+        this.hnswEfConstruction = efConstruction;
+        this.hnswEfSearch = efSearch;
+    }
+
+    // Stores the training rows as float32 or scaled int16/int8 instead of doubles, with brute-force
+    // search. rerankCandidates > 0 re-scores that many of the closest rows in double precision, which
+    // keeps the original rows referenced; 0 drops them. null restores plain storage. Applies from the next train().
+    public void setQuantization(Quantization quantization, int rerankCandidates) {
+        if (quantization != null && indexType != IndexType.BRUTE_FORCE) {
+            throw new IllegalStateException("Quantized storage requires " + IndexType.BRUTE_FORCE);
+        }
+        if (quantization != null && primitiveMetric == null) {
+            throw new IllegalStateException("Quantized storage requires a PrimitiveDistanceMetric");
+        }
+        if (rerankCandidates < 0) {
+            throw new IllegalArgumentException("Re-rank candidates cannot be negative");
+        }
+        this.quantization = quantization;
+        this.rerankCandidates = rerankCandidates;
     }
 
     @Override
@@ -25,7 +154,212 @@ public class KNNClassifier<F, L> implements Model<F, L> {
         if (instances == null || instances.isEmpty()) {
             throw new IllegalArgumentException("Training data cannot be null or empty");
         }
-        this.trainingData = new ArrayList<>(instances);
+        ClassLabels<L> mapping = ClassLabels.of(instances);
+        if (primitiveMetric != null) {
+            train(Dataset.of(instances, mapping.ids()));
+            this.labels = mapping;
+            return;
+        }
+
+        // A custom metric may compare features of any type, so the rows are kept as given
+        this.trainingLabels = mapping.ids();
+        this.numFeatures = instances.get(0).getInput().size();
+        this.trainingRows = new ArrayList<>(instances.size());
+        for (Instance<F, L> instance : instances) {
+            trainingRows.add(instance.getInput());
+        }
+        this.index = null;
+        this.sparseIndex = null;
+        this.sparseTrainingData = null;
+        this.trainingData = null;
+        this.labels = mapping;
+    }
+
+    @Override
+    public void train(Dataset dataset) {
+        train(dataset, null);
+    }
+
+    // Trains with an index already built over dataset, or builds one when index is null
+    @SuppressWarnings("unchecked")
+    private void train(Dataset dataset, NeighborIndex prebuilt) {
+        if (dataset == null || dataset.numRows() == 0) {
+            throw new IllegalArgumentException("Training data cannot be null or empty");
+        }
+        this.trainingLabels = dataset.labels().clone();
+        this.labels = ClassLabels.integers();
+        this.numFeatures = dataset.numFeatures();
+        this.trainingRows = new ArrayList<>();
+        this.sparseIndex = null;
+        this.sparseTrainingData = null;
+        this.trainingData = quantization != null && rerankCandidates == 0 ? null : dataset;
+        if (primitiveMetric != null) {
+            this.index = prebuilt != null ? prebuilt : buildIndex(dataset);
+            return;
+        }
+
+        // Row views read from the shared feature array, nothing is copied per row
+        this.trainingRows = new ArrayList<>(dataset.numRows());
+        for (int i = 0; i < dataset.numRows(); i++) {
+            trainingRows.add((List<F>) dataset.instance(i).getInput());
+        }
+    }
+
+    // Trains on sparse rows through an inverted index, which needs a metric implementing
+    // SparseDistanceMetric (SparseEuclideanDistance or SparseCosineDistance). Predict with test(SparseDataset).
+    public void train(SparseDataset dataset) {
+        if (dataset == null || dataset.numRows() == 0) {
+            throw new IllegalArgumentException("Training data cannot be null or empty");
+        }
+        if (!(distanceMetric instanceof SparseDistanceMetric)) {
+            throw new IllegalStateException("Sparse training data requires a SparseDistanceMetric");
+        }
+        this.trainingLabels = dataset.labels().clone();
+        this.labels = ClassLabels.integers();
+        this.numFeatures = dataset.numFeatures();
+        this.trainingRows = new ArrayList<>();
+        this.index = null;
+        this.trainingData = null;
+        this.sparseTrainingData = dataset;
+        this.sparseIndex = new SparseIndex(dataset, (SparseDistanceMetric) distanceMetric);
+    }
+
+    // Writes k, the metric and index configuration, the training rows (dense row-major or CSR) and their
+    // labels to a ModelFile. Supported metrics: Euclidean, Manhattan, Diabetes and the two sparse ones,
+    // with whole-number labels. An HNSW graph is stored too, since rebuilding it costs as much as training.
+    // Other indexes are rebuilt by load() in one pass over the rows (brute force, quantized codes) or
+    // O(n log n) (KD and ball trees).
+    public void save(Path file) throws IOException {
+        if (trainingLabels == null) {
+            throw new IllegalStateException("Classifier has not been trained");
+        }
+        int metricId = metricId();
+        if (!labels.numeric()) {
+            throw new IllegalStateException("Only classifiers trained on whole-number labels can be saved");
+        }
+        if (trainingData == null && sparseTrainingData == null) {
+            throw new IllegalStateException("Quantized storage without re-ranking keeps no exact rows to save");
+        }
+        double[] metricParameters = new double[0];
+        if (distanceMetric instanceof DiabetesDistanceMetric) {
+            DiabetesDistanceMetric metric = (DiabetesDistanceMetric) distanceMetric;
+            metricParameters = new double[2 * metric.numFeatures()];
+            System.arraycopy(metric.minValues(), 0, metricParameters, 0, metric.numFeatures());
+            System.arraycopy(metric.maxValues(), 0, metricParameters, metric.numFeatures(), metric.numFeatures());
+        }
+        // IndexType and Quantization are stored by position, so their constants may only be appended
+        int[] settings = {k, metricId, indexType.ordinal(), numFeatures, tileSize, hnswM, hnswEfConstruction,
+                hnswEfSearch, quantization == null ? -1 : quantization.ordinal(), rerankCandidates,
+                sparseTrainingData != null ? 1 : 0};
+        if (sparseTrainingData != null) {
+            ModelFile.write(file, ModelType.KNN_CLASSIFIER, settings, metricParameters, trainingLabels,
+                    sparseTrainingData.rowPointers(), sparseTrainingData.columnIndices(), sparseTrainingData.values());
+        } else if (index instanceof HNSWIndex) {
+            HNSWIndex graph = (HNSWIndex) index;
+            ModelFile.write(file, ModelType.KNN_CLASSIFIER, settings, metricParameters, trainingLabels,
+                    trainingData.rowMajor(), graph.levels(), graph.layer0Links(), graph.upperLinks(),
+                    new int[]{graph.entryPoint()});
+        } else {
+            ModelFile.write(file, ModelType.KNN_CLASSIFIER, settings, metricParameters, trainingLabels,
+                    trainingData.rowMajor());
+        }
+    }
+
+    // Reads a classifier written by save(), restoring a stored HNSW graph and rebuilding any other index,
+    // ready to predict
+    public static KNNClassifier<Double, Integer> load(Path file) throws IOException {
+        ModelFile model = ModelFile.open(file, ModelType.KNN_CLASSIFIER);
+        int[] settings = model.ints(0);
+        double[] metricParameters = model.doubles(1);
+        int[] labels = model.ints(2);
+        if (settings.length != 11 || settings[2] < 0 || settings[2] >= IndexType.values().length
+                || settings[8] < -1 || settings[8] >= Quantization.values().length) {
+            throw model.corrupt("invalid settings");
+        }
+        int numFeatures = settings[3];
+        boolean sparse = settings[10] != 0;
+
+        try {
+            KNNClassifier<Double, Integer> classifier = new KNNClassifier<>(settings[0],
+                    metric(settings[1], metricParameters, model), IndexType.values()[settings[2]]);
+            classifier.setTileSize(settings[4]);
+            classifier.setHnswParameters(settings[5], settings[6], settings[7]);
+            if (settings[8] >= 0) {
+                classifier.setQuantization(Quantization.values()[settings[8]], settings[9]);
+            }
+            if (sparse) {
+                classifier.train(new SparseDataset(model.ints(3), model.ints(4), model.doubles(5), labels, numFeatures));
+            } else {
+                double[] rows = model.doubles(3);
+                if (numFeatures <= 0 || rows.length != (long) labels.length * numFeatures) {
+                    throw model.corrupt("expected " + labels.length + " x " + numFeatures + " training values");
+                }
+                Dataset dataset = new Dataset(rows, labels, numFeatures);
+                NeighborIndex graph = null;
+                if (classifier.indexType == IndexType.HNSW && model.numSections() > 4) {
+                    int[] entryPoint = model.ints(7);
+                    if (entryPoint.length != 1) {
+                        throw model.corrupt("invalid HNSW entry point");
+                    }
+                    graph = new HNSWIndex(dataset, classifier.primitiveMetric, settings[5], settings[6], settings[7],
+                            model.ints(4), model.ints(5), model.ints(6), entryPoint[0]);
+                }
+                classifier.train(dataset, graph);
+            }
+            return classifier;
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            throw model.corrupt(e.getMessage());
+        }
+    }
+
+    private int metricId() {
+        // Exact classes only, a subclass may change the distance
+        Class<?> type = distanceMetric.getClass();
+        if (type == EuclideanDistance.class) {
+            return EUCLIDEAN;
+        } else if (type == ManhattanDistance.class) {
+            return MANHATTAN;
+        } else if (type == DiabetesDistanceMetric.class) {
+            return DIABETES;
+        } else if (type == SparseEuclideanDistance.class) {
+            return SPARSE_EUCLIDEAN;
+        } else if (type == SparseCosineDistance.class) {
+            return SPARSE_COSINE;
+        }
+        throw new IllegalStateException(type.getSimpleName() + " cannot be saved");
+    }
+
+    private static DistanceMetric<Double> metric(int id, double[] parameters, ModelFile model) throws IOException {
+        switch (id) {
+            case EUCLIDEAN:
+                return new EuclideanDistance();
+            case MANHATTAN:
+                return new ManhattanDistance();
+            case DIABETES:
+                int half = parameters.length / 2;
+                return new DiabetesDistanceMetric(Arrays.copyOfRange(parameters, 0, half),
+                        Arrays.copyOfRange(parameters, half, parameters.length));
+            case SPARSE_EUCLIDEAN:
+                return new SparseEuclideanDistance();
+            case SPARSE_COSINE:
+                return new SparseCosineDistance();
+            default:
+                throw model.corrupt("unknown metric " + id);
+        }
+    }
+
+    private NeighborIndex buildIndex(Dataset dataset) {
+        if (quantization != null) {
+            return new QuantizedIndex(dataset, primitiveMetric, quantization, rerankCandidates);
+        }
+        if (indexType == IndexType.BRUTE_FORCE && tileSize > 0) {
+            return new BruteForceIndex(dataset, primitiveMetric, tileSize);
+        }
+        if (indexType == IndexType.HNSW) {
+            return new HNSWIndex(dataset, primitiveMetric, hnswM, hnswEfConstruction, hnswEfSearch,
+                    HNSWIndex.DEFAULT_SEED);
+        }
+        return indexType.build(dataset, primitiveMetric);
     }
 
     @Override
@@ -34,55 +368,240 @@ public class KNNClassifier<F, L> implements Model<F, L> {
             throw new IllegalArgumentException("Test instances cannot be null or empty");
         }
 
-        List<L> predictions = new ArrayList<>();
-        for (Instance<F, L> instance : instances) {
-            predictions.add(predict(instance.getInput()));
+        if (primitiveMetric != null) {
+            if (trainingLabels == null) {
+                throw new IllegalStateException("Classifier has not been trained");
+            }
+            checkDense();
+            // Only the inputs are packed, so unlabeled instances can be classified
+            double[] queries = new double[instances.size() * numFeatures];
+            for (int i = 0; i < instances.size(); i++) {
+                List<F> input = instances.get(i).getInput();
+                if (input == null || input.size() != numFeatures) {
+                    throw new IllegalArgumentException("Features must have length " + numFeatures);
+                }
+                for (int f = 0; f < numFeatures; f++) {
+                    queries[i * numFeatures + f] = ((Number) input.get(f)).doubleValue();
+                }
+            }
+            return labels.labels(predictRows(queries, instances.size()));
+        }
+
+        int[] predictions = new int[instances.size()];
+        run(predictions.length, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                predictions[i] = predict(instances.get(i).getInput());
+            }
+        });
+        return labels.labels(predictions);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public int[] test(Dataset dataset) {
+        if (dataset == null || dataset.numRows() == 0) {
+            throw new IllegalArgumentException("Test instances cannot be null or empty");
+        }
+
+        if (trainingLabels == null) {
+            throw new IllegalStateException("Classifier has not been trained");
         }
+        checkDense();
+
+        int[] predictions = new int[dataset.numRows()];
+        if (primitiveMetric == null) {
+            run(predictions.length, (from, to) -> {
+                for (int i = from; i < to; i++) {
+                    predictions[i] = predict((List<F>) dataset.instance(i).getInput());
+                }
+            });
+            return predictions;
+        }
+
+        if (dataset.numFeatures() != numFeatures) {
+            throw new IllegalArgumentException("Features must have length " + numFeatures);
+        }
+        return predictRows(dataset.rowMajor(), predictions.length);
+    }
+
+    // Predicts count row-major query rows of the training width
+    private int[] predictRows(double[] queries, int count) {
+        int[] predictions = new int[count];
+        run(count, (from, to) -> {
+            // Queries go to the index a block at a time so tiled search can share each training tile
+            NeighborHeap[] block = blockHeaps.get();
+            for (int first = from; first < to; first += QUERY_BLOCK) {
+                int blockSize = Math.min(QUERY_BLOCK, to - first);
+                index.searchBlock(queries, first * numFeatures, numFeatures, blockSize, block);
+                for (int q = 0; q < blockSize; q++) {
+                    predictions[first + q] = vote(block[q]);
+                }
+            }
+        });
+        return predictions;
+    }
+
+    public int[] test(SparseDataset dataset) {
+        if (dataset == null || dataset.numRows() == 0) {
+            throw new IllegalArgumentException("Test instances cannot be null or empty");
+        }
+        if (sparseIndex == null) {
+            throw new IllegalStateException("Classifier has not been trained on sparse data");
+        }
+        if (dataset.numFeatures() != numFeatures) {
+            throw new IllegalArgumentException("Features must have length " + numFeatures);
+        }
+
+        // Computed once up front, the lazy norms are not safe to initialise from several threads
+        dataset.squaredNorms();
+        int[] predictions = new int[dataset.numRows()];
+        run(predictions.length, (from, to) -> {
+            NeighborHeap heap = heaps.get();
+            for (int i = from; i < to; i++) {
+                sparseIndex.search(dataset, i, heap);
+                predictions[i] = vote(heap);
+            }
+        });
         return predictions;
     }
 
-    private L predict(List<F> features) {
+    // Runs the range [0, count) in blocks of QUERY_BLOCK, in parallel when configured to.
+    // Every block writes only its own slots, so the output keeps the input order.
+    private void run(int count, RangeTask task) {
+        if (parallelism == 1 || count <= QUERY_BLOCK) {
+            task.run(0, count);
+            return;
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.invoke(new RangeAction(task, 0, count));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // Indices of and distances to the k nearest training rows, closest first
+    public Neighbors kNeighbors(double[] query) {
+        NeighborHeap heap = heaps.get();
+        if (primitiveMetric != null) {
+            search(query, 0, heap);
+        } else {
+            search(toList(query), heap);
+        }
+        Neighbors neighbors = heap.toNeighbors();
+        if (primitiveMetric == null) {
+            return neighbors;
+        }
+
+        double[] distances = new double[neighbors.size()];
+        for (int i = 0; i < distances.length; i++) {
+            distances[i] = primitiveMetric.toDistance(neighbors.distance(i));
+        }
+        return new Neighbors(neighbors.indices(), distances);
+    }
+
+    private int predict(List<F> features) {
+        NeighborHeap heap = heaps.get();
+        search(features, heap);
+        return vote(heap);
+    }
+
+    private void search(List<F> features, NeighborHeap heap) {
         if (features == null || features.isEmpty()) {
             throw new IllegalArgumentException("Features cannot be null or empty");
         }
+        if (trainingLabels == null) {
+            throw new IllegalStateException("Classifier has not been trained");
+        }
+        checkDense();
 
-        List<DistanceLabel> distances = new ArrayList<>();
+        // Calculate distances to all training instances, keeping the k closest
+        heap.clear();
+        for (int i = 0; i < trainingRows.size(); i++) {
+            heap.offer(i, distanceMetric.calculate(features, trainingRows.get(i)));
+        }
+    }
 
-        // Calculate distances to all training instances
-        for (Instance<F, L> trainInstance : trainingData) {
-            double distance = distanceMetric.calculate(features, trainInstance.getInput());
-            distances.add(new DistanceLabel(distance, trainInstance.getOutput()));
+    private void search(double[] query, int offset, NeighborHeap heap) {
+        if (trainingLabels == null) {
+            throw new IllegalStateException("Classifier has not been trained");
         }
+        checkDense();
+        if (query.length - offset < numFeatures) {
+            throw new IllegalArgumentException("Features must have length " + numFeatures);
+        }
+        index.search(query, offset, heap);
+    }
+
+    private void checkDense() {
+        if (sparseIndex != null) {
+            throw new IllegalStateException("Classifier was trained on sparse data, use test(SparseDataset)");
+        }
+    }
 
-        // Sort by distance
-        Collections.sort(distances);
+    // Build and query statistics of the neighbour index, null before training or without a primitive metric
+    public IndexStats getIndexStats() {
+        if (sparseIndex != null) {
+            return sparseIndex.stats();
+        }
+        return index == null ? null : index.stats();
+    }
 
-        // Get k nearest neighbors
-        Map<L, Integer> labelCounts = new HashMap<>();
-        for (int i = 0; i < k && i < distances.size(); i++) {
-            L label = distances.get(i).label;
-            labelCounts.merge(label, 1, Integer::sum);
+    // Majority label among the neighbours in the heap, ties go to the smaller label
+    private int vote(NeighborHeap heap) {
+        int bestLabel = 0;
+        int bestCount = 0;
+        for (int i = 0; i < heap.size(); i++) {
+            int label = trainingLabels[heap.index(i)];
+            int count = 0;
+            for (int j = 0; j < heap.size(); j++) {
+                if (trainingLabels[heap.index(j)] == label) {
+                    count++;
+                }
+            }
+            if (count > bestCount || (count == bestCount && label < bestLabel)) {
+                bestLabel = label;
+                bestCount = count;
+            }
         }
+        return bestLabel;
+    }
 
-        // Return majority label
-        return labelCounts.entrySet().stream()
-                .max(Map.Entry.comparingByValue())
-                .orElseThrow(() -> new RuntimeException("No majority label found"))
-                .getKey();
+    private interface RangeTask {
+        void run(int from, int to);
     }
 
-    private class DistanceLabel implements Comparable<DistanceLabel> {
-        final double distance;
-        final L label;
+    private static class RangeAction extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final RangeTask task;
+        private final int from;
+        private final int to;
 
-        DistanceLabel(double distance, L label) {
-            this.distance = distance;
-            this.label = label;
+        RangeAction(RangeTask task, int from, int to) {
+            this.task = task;
+            this.from = from;
+            this.to = to;
         }
 
         @Override
-        public int compareTo(DistanceLabel other) {
-            return Double.compare(this.distance, other.distance);
+        protected void compute() {
+            if (to - from <= QUERY_BLOCK) {
+                task.run(from, to);
+                return;
+            }
+            int mid = from + (to - from) / 2;
+            invokeAll(new RangeAction(task, from, mid), new RangeAction(task, mid, to));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<F> toList(double[] values) {
+        List<Double> list = new ArrayList<>(values.length);
+        for (double value : values) {
+            list.add(value);
         }
+        return (List<F>) list;
     }
-}
\ No newline at end of file
+}
@@ -1,40 +1,151 @@
 package Models;
 
+import DataProcessing.domain.Batch;
+import DataProcessing.domain.Dataset;
+import DataProcessing.domain.IncrementalModel;
 import DataProcessing.domain.Instance;
+import DataProcessing.domain.InstanceSource;
 import DataProcessing.domain.Model;
+import DataProcessing.domain.SparseDataset;
+import Models.linear.LogisticLoss;
+import Models.linear.Optimizer;
+import Models.linear.ParallelMode;
+import Models.persistence.ModelFile;
+import Models.persistence.ModelType;
+import utils.SparseKernels;
 
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
 
-public class LogisticRegression implements Model<Double, Integer> {
+public class LogisticRegression implements Model<Double, Integer>, IncrementalModel {
+    // Fewest rows per thread in a synchronous mini-batch; with fewer, forking and joining every batch
+    // costs more than the rows save
+    public static final int MIN_SHARD_ROWS = 256;
+    // Atomic (tear-free) element access for the shared weights in Hogwild mode
+    private static final VarHandle WEIGHT = MethodHandles.arrayElementVarHandle(double[].class);
+
+    // Weights of the standardized features, the ones training updates (bias first)
     private double[] weights;
+    // The same model with the standardization folded in, applied to raw feature values when scoring
+    private double[] scoringWeights;
     private double learningRate;
     private int epochs;
     private static final int NUM_FEATURES = 8;
+    // Feature standardization fitted by the last train(Dataset), train(SparseDataset) or train(InstanceSource), null before
+    private double[] means;
+    private double[] stds;
+    // Rows averaged into each weight update, 1 for plain per-row SGD
+    private int batchSize = 1;
+    private long seed = 42;
+    // Early stopping: training ends once the epoch loss has failed to drop by more than
+    // tolerance for patience epochs in a row; a patience of 0 always runs every epoch
+    private double tolerance;
+    private int patience;
+    private int epochsRun;
+    private int parallelism = 1;
+    private ParallelMode parallelMode = ParallelMode.SYNCHRONOUS;
+    // Full-batch optimizer replacing gradient descent in train(Dataset), null for gradient descent
+    private Optimizer optimizer;
+    // L2 penalty on the feature weights (not the bias)
+    private double l2;
+    // Gradient of the current mini-batch (bias first) and one scaled row, reused across updates
+    private double[] gradient;
+    private double[] scaledRow;
 
     public LogisticRegression(double learningRate, int epochs) {
         // Initialize weights for all features plus bias
         this.weights = new double[NUM_FEATURES + 1];
+        this.scoringWeights = new double[NUM_FEATURES + 1];
         this.learningRate = learningRate;
         this.epochs = epochs;
     }
 
-    // Normalize a feature column
-    private double[] normalizeFeature(List<Double> feature) {
-        double mean = feature.stream()
-                .mapToDouble(Double::doubleValue)
-                .average()
-                .orElse(0.0);
+    public void setBatchSize(int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be greater than 0");
+        }
+        this.batchSize = batchSize;
+    }
+
+    // Seed of the row order shuffled before every epoch
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    // Stops training once the mean log-loss of an epoch has not improved on the best one so far by
+    // more than tolerance for patience consecutive epochs. A patience of 0 disables early stopping.
+    public void setEarlyStopping(double tolerance, int patience) {
+        if (tolerance < 0 || patience < 0) {
+            throw new IllegalArgumentException("Tolerance and patience cannot be negative");
+        }
+        this.tolerance = tolerance;
+        this.patience = patience;
+    }
+
+    // Number of threads used by train(Dataset), 1 trains on the calling thread; train(SparseDataset) always uses one
+    public void setParallelism(int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Parallelism must be greater than 0");
+        }
+        this.parallelism = parallelism;
+    }
+
+    // Synchronous mode splits every mini-batch across the threads, so with parallelism > 1 training
+    // requires a batch size of at least parallelism * MIN_SHARD_ROWS
+    public void setParallelMode(ParallelMode parallelMode) {
+        if (parallelMode == null) {
+            throw new IllegalArgumentException("Parallel mode cannot be null");
+        }
+        this.parallelMode = parallelMode;
+    }
+
+    // Trains with a full-batch optimizer such as LBFGS or NewtonIRLS instead of mini-batch gradient
+    // descent; learning rate, epochs, batch size and parallelism are then not used. null restores descent.
+    public void setOptimizer(Optimizer optimizer) {
+        this.optimizer = optimizer;
+    }
+
+    // L2 penalty l2 / 2 * |w|^2 on the feature weights, applied by every training path
+    public void setL2(double l2) {
+        if (l2 < 0) {
+            throw new IllegalArgumentException("L2 penalty cannot be negative");
+        }
+        this.l2 = l2;
+    }
+
+    // Epochs (or, with an optimizer, passes over the data) the last call to train(Dataset) ran before converging or reaching the limit
+    public int getEpochsRun() {
+        return epochsRun;
+    }
+
+    // Normalize a feature column stored at [offset, offset + length) into column j of the
+    // row-major matrix target, which has numFeatures values per row, keeping its mean and std
+    private void normalizeFeature(double[] column, int offset, int length, double[] target, int j, int numFeatures) {
+        double sum = 0.0;
+        for (int i = offset; i < offset + length; i++) {
+            sum += column[i];
+        }
+        double mean = length > 0 ? sum / length : 0.0;
 
-        double std = Math.sqrt(feature.stream()
-                .mapToDouble(x -> Math.pow(x - mean, 2))
-                .average()
-                .orElse(0.0));
+        double squaredSum = 0.0;
+        for (int i = offset; i < offset + length; i++) {
+            squaredSum += (column[i] - mean) * (column[i] - mean);
+        }
+        double std = length > 0 ? Math.sqrt(squaredSum / length) : 0.0;
 
-        return feature.stream()
-                .mapToDouble(x -> (x - mean) / (std == 0 ? 1 : std))
-                .toArray();
+        means[j] = mean;
+        stds[j] = std == 0 ? 1 : std;
+        for (int i = 0; i < length; i++) {
+            target[i * numFeatures + j] = (column[offset + i] - mean) / stds[j];
+        }
     }
 
 
@@ -64,68 +175,622 @@ public class LogisticRegression implements Model<Double, Integer> {
 
     @Override
     public void train(List<Instance<Double, Integer>> instances) {
-        int numFeatures = instances.get(0).getInput().size();
+        train(Dataset.of(instances));
+    }
 
-        // Prepare normalized features
-        List<List<Double>> features = new ArrayList<>();
-        for (int i = 0; i < numFeatures; i++) {
-            int featureIndex = i;
-            List<Double> featureColumn = instances.stream()
-                    .map(instance -> instance.getInput().get(featureIndex))
-                    .collect(Collectors.toList());
-            features.add(featureColumn);
+    @Override
+    public void train(Dataset dataset) {
+        if (dataset == null || dataset.numRows() == 0) {
+            throw new IllegalArgumentException("Training data cannot be null or empty");
         }
+        checkSynchronousBatch();
+        int numFeatures = dataset.numFeatures();
+        int numRows = dataset.numRows();
+        ensureWeights(numFeatures);
+        double[] columns = dataset.columnMajor();
+        int[] labels = dataset.labels();
 
-        // Normalize each feature
-        double[][] normalizedFeatures = new double[numFeatures][];
-        for (int i = 0; i < numFeatures; i++) {
-            normalizedFeatures[i] = normalizeFeature(features.get(i));
+        // Normalize each feature column into a contiguous row-major matrix
+        double[] normalizedFeatures = new double[columns.length];
+        means = new double[numFeatures];
+        stds = new double[numFeatures];
+        for (int j = 0; j < numFeatures; j++) {
+            normalizeFeature(columns, dataset.columnOffset(j), numRows, normalizedFeatures, j, numFeatures);
         }
 
-        // Training loop
-        for (int epoch = 0; epoch < epochs; epoch++) {
-            for (int i = 0; i < instances.size(); i++) {
-                // Calculate prediction
-                double[] instanceFeatures = new double[numFeatures];
+        if (optimizer != null) {
+            LogisticLoss loss = new LogisticLoss(normalizedFeatures, labels, numFeatures, l2);
+            optimizer.minimize(loss, weights);
+            epochsRun = loss.evaluations();
+        } else {
+            descend(normalizedFeatures, labels, numFeatures);
+        }
+        foldScaling();
+    }
+
+    // Smaller batches would leave threads idle on every mini-batch, so they are rejected rather than run
+    private void checkSynchronousBatch() {
+        if (optimizer == null && parallelism > 1 && parallelMode == ParallelMode.SYNCHRONOUS
+                && batchSize < parallelism * MIN_SHARD_ROWS) {
+            throw new IllegalStateException("Synchronous training on " + parallelism + " threads needs a batch size of"
+                    + " at least " + parallelism * MIN_SHARD_ROWS + ", found " + batchSize
+                    + "; raise it or use ParallelMode.HOGWILD");
+        }
+    }
+
+    // Trains on CSR rows in O(nnz) per epoch. Features are only divided by their std (over all rows,
+    // implicit zeros included), not centred, so the scaled rows keep their zeros. Positive labels are
+    // class 1, all others class 0, which accepts both 0/1 and -1/+1 libsvm files.
+    public void train(SparseDataset dataset) {
+        if (dataset == null || dataset.numRows() == 0) {
+            throw new IllegalArgumentException("Training data cannot be null or empty");
+        }
+        int numFeatures = dataset.numFeatures();
+        int numRows = dataset.numRows();
+        ensureWeights(numFeatures);
+
+        // Column sums and sums of squares over the non-zeros; the zeros only add to the count
+        int[] columns = dataset.columnIndices();
+        double[] values = dataset.values();
+        double[] sums = new double[numFeatures];
+        double[] squaredSums = new double[numFeatures];
+        for (int k = 0; k < values.length; k++) {
+            sums[columns[k]] += values[k];
+            squaredSums[columns[k]] += values[k] * values[k];
+        }
+        means = new double[numFeatures];
+        stds = new double[numFeatures];
+        for (int j = 0; j < numFeatures; j++) {
+            double mean = sums[j] / numRows;
+            double std = Math.sqrt(Math.max(0.0, squaredSums[j] / numRows - mean * mean));
+            stds[j] = std == 0 ? 1 : std;
+        }
+        double[] scaledValues = new double[values.length];
+        for (int k = 0; k < values.length; k++) {
+            scaledValues[k] = values[k] / stds[columns[k]];
+        }
+        SparseDataset scaled = dataset.withValues(scaledValues);
+        int[] labels = new int[numRows];
+        for (int i = 0; i < numRows; i++) {
+            labels[i] = dataset.label(i) > 0 ? 1 : 0;
+        }
+
+        if (optimizer != null) {
+            LogisticLoss loss = new LogisticLoss(scaled, labels, l2);
+            optimizer.minimize(loss, weights);
+            epochsRun = loss.evaluations();
+        } else {
+            descendSparse(scaled, labels);
+        }
+        foldScaling();
+    }
+
+    // Mini-batch gradient descent touching only the non-zeros of each row. The L2 decay of every
+    // feature weight is kept as one shared factor, weights[1..] holding the weights divided by it,
+    // so a step never has to visit the weights of features absent from the batch.
+    private void descendSparse(SparseDataset data, int[] labels) {
+        int numRows = labels.length;
+        int[] columns = data.columnIndices();
+        double[] values = data.values();
+        int[] order = new int[numRows];
+        for (int i = 0; i < numRows; i++) {
+            order[i] = i;
+        }
+        double[] errors = new double[Math.min(batchSize, numRows)];
+        double decay = 1.0 - learningRate * l2;
+        double weightScale = 1.0;
+        SplittableRandom random = new SplittableRandom(seed);
+        double bestLoss = Double.POSITIVE_INFINITY;
+        int epochsWithoutImprovement = 0;
+        epochsRun = 0;
+        while (epochsRun < epochs) {
+            shuffle(order, random);
+            double loss = 0.0;
+            for (int start = 0; start < numRows; start += batchSize) {
+                int end = Math.min(numRows, start + batchSize);
+
+                // Errors of the whole batch against the same weights, then one update
+                double errorSum = 0.0;
+                for (int b = start; b < end; b++) {
+                    int row = order[b];
+                    double z = weights[0] + weightScale * SparseKernels.dot(columns, values,
+                            data.rowStart(row), data.rowEnd(row), weights, 1);
+                    errors[b - start] = labels[row] - sigmoid(z);
+                    errorSum += errors[b - start];
+                    if (patience > 0) {
+                        loss += Math.max(z, 0) + Math.log1p(Math.exp(-Math.abs(z))) - labels[row] * z;
+                    }
+                }
+
+                double step = learningRate / (end - start);
+                weights[0] += step * errorSum;
+                weightScale *= decay;
+                if (Math.abs(weightScale) < 1e-9) {
+                    // Fold the factor back in before the scaled weights lose precision
+                    for (int j = 1; j < weights.length; j++) {
+                        weights[j] *= weightScale;
+                    }
+                    weightScale = 1.0;
+                }
+                double scaledStep = step / weightScale;
+                for (int b = start; b < end; b++) {
+                    int row = order[b];
+                    double update = scaledStep * errors[b - start];
+                    for (int k = data.rowStart(row); k < data.rowEnd(row); k++) {
+                        weights[columns[k] + 1] += update * values[k];
+                    }
+                }
+            }
+            epochsRun++;
+
+            if (patience > 0) {
+                loss /= numRows;
+                if (loss < bestLoss - tolerance) {
+                    epochsWithoutImprovement = 0;
+                } else if (++epochsWithoutImprovement >= patience) {
+                    break;
+                }
+                bestLoss = Math.min(bestLoss, loss);
+            }
+        }
+        for (int j = 1; j < weights.length; j++) {
+            weights[j] *= weightScale;
+        }
+    }
+
+    // Mini-batch gradient descent over the standardized row-major matrix
+    private void descend(double[] normalizedFeatures, int[] labels, int numFeatures) {
+        int numRows = labels.length;
+        // Mini-batch training loop over a freshly shuffled row order each epoch
+        int[] order = new int[numRows];
+        for (int i = 0; i < numRows; i++) {
+            order[i] = i;
+        }
+        SplittableRandom random = new SplittableRandom(seed);
+        double bestLoss = Double.POSITIVE_INFINITY;
+        int epochsWithoutImprovement = 0;
+        epochsRun = 0;
+        Epoch epoch = new Epoch(normalizedFeatures, labels, order, numFeatures);
+        ForkJoinPool pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+        try {
+            while (epochsRun < epochs) {
+                shuffle(order, random);
+                double loss = pool != null && parallelMode == ParallelMode.HOGWILD
+                        ? epoch.runHogwild(pool) : epoch.runSynchronous(pool);
+                epochsRun++;
+
+                // The loss is summed from the predictions made during the epoch, so checking it costs no extra pass
+                if (patience > 0) {
+                    loss /= numRows;
+                    if (loss < bestLoss - tolerance) {
+                        epochsWithoutImprovement = 0;
+                    } else if (++epochsWithoutImprovement >= patience) {
+                        break;
+                    }
+                    bestLoss = Math.min(bestLoss, loss);
+                }
+            }
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+    }
+
+    // One pass over the rows in the current shuffled order, with buffers sized once per training run
+    private class Epoch {
+        final double[] features;
+        final int[] labels;
+        final int[] order;
+        final int numFeatures;
+        // Synchronous mode: one gradient per shard of the mini-batch, summed into batchGradients[0]
+        final double[][] batchGradients;
+        // Hogwild mode: a weight snapshot and a gradient per shard, allocated on first use
+        double[][] shardWeights;
+        double[][] shardGradients;
+
+        Epoch(double[] features, int[] labels, int[] order, int numFeatures) {
+            this.features = features;
+            this.labels = labels;
+            this.order = order;
+            this.numFeatures = numFeatures;
+            this.batchGradients = new double[parallelism][numFeatures + 1];
+        }
+
+        // Every mini-batch is split into one contiguous shard per thread (fewer for a short last batch),
+        // whose gradients are computed against the same weights, summed pairwise and applied once.
+        // Returns the summed loss of the epoch.
+        double runSynchronous(ForkJoinPool pool) {
+            double loss = 0.0;
+            for (int start = 0; start < order.length; start += batchSize) {
+                int end = Math.min(order.length, start + batchSize);
+                int shards = pool == null ? 1 : Math.max(1, Math.min(parallelism, (end - start) / MIN_SHARD_ROWS));
+                ShardGradient task = new ShardGradient(this, start, end, shards, 0, shards);
+                loss += shards > 1 ? pool.invoke(task) : task.compute();
+                applyGradient(weights, batchGradients[0], end - start);
+            }
+            return loss;
+        }
+
+        // The rows of one shard, accumulated into its own gradient buffer against the current weights
+        double shard(int start, int end, int shards, int shard) {
+            double[] gradient = batchGradients[shard];
+            double loss = 0.0;
+            int from = start + (int) ((long) (end - start) * shard / shards);
+            int to = start + (int) ((long) (end - start) * (shard + 1) / shards);
+            for (int b = from; b < to; b++) {
+                int row = order[b];
+                loss += accumulate(features, row * numFeatures, numFeatures, labels[row], weights, gradient);
+            }
+            return loss;
+        }
+
+        // Every thread takes a contiguous shard of the shuffled order and runs mini-batch SGD over it,
+        // reading a snapshot of the shared weights per mini-batch and adding its update to them in place
+        double runHogwild(ForkJoinPool pool) {
+            int shards = parallelism;
+            if (shardWeights == null) {
+                shardWeights = new double[shards][numFeatures + 1];
+                shardGradients = new double[shards][numFeatures + 1];
+            }
+            double[] losses = new double[shards];
+            List<ForkJoinTask<?>> tasks = new ArrayList<>(shards);
+            for (int s = 0; s < shards; s++) {
+                int shard = s;
+                int from = (int) ((long) order.length * shard / shards);
+                int to = (int) ((long) order.length * (shard + 1) / shards);
+                tasks.add(ForkJoinTask.adapt(() -> {
+                    losses[shard] = runShard(from, to, shardWeights[shard], shardGradients[shard]);
+                }));
+            }
+            pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+
+            double loss = 0.0;
+            for (double shardLoss : losses) {
+                loss += shardLoss;
+            }
+            return loss;
+        }
+
+        private double runShard(int from, int to, double[] snapshot, double[] gradient) {
+            double loss = 0.0;
+            for (int start = from; start < to; start += batchSize) {
+                int end = Math.min(to, start + batchSize);
+                for (int j = 0; j < snapshot.length; j++) {
+                    snapshot[j] = (double) WEIGHT.getOpaque(weights, j);
+                }
+                for (int b = start; b < end; b++) {
+                    int row = order[b];
+                    loss += accumulate(features, row * numFeatures, numFeatures, labels[row], snapshot, gradient);
+                }
+                // Updates from other threads between the read and the write may be lost, which Hogwild tolerates
+                double step = learningRate / (end - start);
+                WEIGHT.setOpaque(weights, 0, (double) WEIGHT.getOpaque(weights, 0) + step * gradient[0]);
+                gradient[0] = 0.0;
+                for (int j = 1; j < gradient.length; j++) {
+                    double weight = (double) WEIGHT.getOpaque(weights, j);
+                    WEIGHT.setOpaque(weights, j, weight + step * gradient[j] - learningRate * l2 * snapshot[j]);
+                    gradient[j] = 0.0;
+                }
+            }
+            return loss;
+        }
+    }
+
+    // Gradient of the shards [fromShard, toShard) of a mini-batch, split in halves down to single shards
+    // and summed back pairwise into the buffer of the first shard. Returns the shards' loss.
+    private static class ShardGradient extends RecursiveTask<Double> {
+        private static final long serialVersionUID = 1L;
+
+        private final Epoch epoch;
+        private final int start;
+        private final int end;
+        private final int shards;
+        private final int fromShard;
+        private final int toShard;
+
+        ShardGradient(Epoch epoch, int start, int end, int shards, int fromShard, int toShard) {
+            this.epoch = epoch;
+            this.start = start;
+            this.end = end;
+            this.shards = shards;
+            this.fromShard = fromShard;
+            this.toShard = toShard;
+        }
+
+        @Override
+        protected Double compute() {
+            if (toShard - fromShard == 1) {
+                return epoch.shard(start, end, shards, fromShard);
+            }
+            int mid = (fromShard + toShard) >>> 1;
+            ShardGradient left = new ShardGradient(epoch, start, end, shards, fromShard, mid);
+            ShardGradient right = new ShardGradient(epoch, start, end, shards, mid, toShard);
+            right.fork();
+            double leftLoss = left.compute();
+            double rightLoss = right.join();
+
+            double[] sum = epoch.batchGradients[fromShard];
+            double[] other = epoch.batchGradients[mid];
+            for (int j = 0; j < sum.length; j++) {
+                sum[j] += other[j];
+                other[j] = 0.0;
+            }
+            return leftLoss + rightLoss;
+        }
+    }
+
+    private static void shuffle(int[] order, SplittableRandom random) {
+        for (int i = order.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = order[i];
+            order[i] = order[j];
+            order[j] = swap;
+        }
+    }
+
+    // Adds the log-loss gradient of one row to the mini-batch gradient and returns the row's loss
+    // (computed only when early stopping needs it)
+    private double accumulate(double[] features, int offset, int numFeatures, int label,
+                              double[] weights, double[] gradient) {
+        double z = weights[0]; // bias
+        for (int j = 0; j < numFeatures; j++) {
+            z += weights[j + 1] * features[offset + j];
+        }
+        double error = label - sigmoid(z);
+
+        gradient[0] += error;
+        for (int j = 0; j < numFeatures; j++) {
+            gradient[j + 1] += error * features[offset + j];
+        }
+        if (patience == 0) {
+            return 0.0;
+        }
+        // log(1 + e^z) - label * z, written to stay finite for large |z|
+        return Math.max(z, 0) + Math.log1p(Math.exp(-Math.abs(z))) - label * z;
+    }
+
+    // Moves the weights along the averaged mini-batch gradient, shrinking the feature weights by the
+    // L2 penalty, and clears the gradient for the next batch
+    private void applyGradient(double[] weights, double[] gradient, int count) {
+        double step = learningRate / count;
+        weights[0] += step * gradient[0];
+        gradient[0] = 0.0;
+        for (int j = 1; j < weights.length; j++) {
+            weights[j] += step * gradient[j] - learningRate * l2 * weights[j];
+            gradient[j] = 0.0;
+        }
+    }
+
+    // Streams the source once to fit the feature scaling, then runs one SGD pass per epoch.
+    // Only one batch is held in memory at a time.
+    @Override
+    public void train(InstanceSource source) {
+        int numFeatures = source.numFeatures();
+        ensureWeights(numFeatures);
+        double[] means = new double[numFeatures];
+        double[] squaredDiffs = new double[numFeatures];
+        long count = 0;
+
+        // Welford's running mean/variance, so the data only needs to be read once
+        for (Batch batch : source) {
+            double[] features = batch.features();
+            for (int i = 0; i < batch.size(); i++) {
+                count++;
+                int offset = batch.rowOffset(i);
                 for (int j = 0; j < numFeatures; j++) {
-                    instanceFeatures[j] = normalizedFeatures[j][i];
+                    double delta = features[offset + j] - means[j];
+                    means[j] += delta / count;
+                    squaredDiffs[j] += delta * (features[offset + j] - means[j]);
                 }
+            }
+        }
+        if (count == 0) {
+            throw new IllegalArgumentException("Training data cannot be empty");
+        }
+
+        double[] stds = new double[numFeatures];
+        for (int j = 0; j < numFeatures; j++) {
+            double std = Math.sqrt(squaredDiffs[j] / count);
+            stds[j] = std == 0 ? 1 : std;
+        }
+        this.means = means;
+        this.stds = stds;
+
+        for (int epoch = 0; epoch < epochs; epoch++) {
+            for (Batch batch : source) {
+                trainBatch(batch);
+            }
+        }
+    }
 
-                double prediction = predict(instanceFeatures);
-                double error = instances.get(i).getOutput() - prediction;
+    // One mini-batch pass over the rows of a batch in order, standardized with the statistics of the
+    // last fit if there is one
+    @Override
+    public void trainBatch(Batch batch) {
+        int numFeatures = batch.numFeatures();
+        ensureWeights(numFeatures);
+        double[] features = batch.features();
 
-                // Update weights
-                weights[0] += learningRate * error; // bias
+        for (int start = 0; start < batch.size(); start += batchSize) {
+            int end = Math.min(batch.size(), start + batchSize);
+            for (int i = start; i < end; i++) {
+                int offset = batch.rowOffset(i);
                 for (int j = 0; j < numFeatures; j++) {
-                    weights[j + 1] += learningRate * error * instanceFeatures[j];
+                    double value = features[offset + j];
+                    scaledRow[j] = means == null ? value : (value - means[j]) / stds[j];
                 }
+                accumulate(scaledRow, 0, numFeatures, batch.label(i), weights, gradient);
             }
+            applyGradient(weights, gradient, end - start);
+        }
+        foldScaling();
+    }
+
+    // Rewrites the model for raw inputs: w . (x - mean) / std + b becomes (w / std) . x + b - w . mean / std,
+    // so scoring a row is a single dot product with no per-row standardization
+    private void foldScaling() {
+        double[] folded = new double[weights.length];
+        folded[0] = weights[0];
+        for (int j = 1; j < weights.length; j++) {
+            if (means == null) {
+                folded[j] = weights[j];
+            } else {
+                folded[j] = weights[j] / stds[j - 1];
+                folded[0] -= folded[j] * means[j - 1];
+            }
+        }
+        scoringWeights = folded;
+    }
+
+    // Resizes the weights when the data has a different number of features than the current model
+    private void ensureWeights(int numFeatures) {
+        if (weights.length != numFeatures + 1) {
+            weights = new double[numFeatures + 1];
+            scoringWeights = new double[numFeatures + 1];
+            means = null;
+            stds = null;
+        }
+        if (gradient == null || gradient.length != weights.length) {
+            gradient = new double[weights.length];
+            scaledRow = new double[numFeatures];
         }
     }
 
     @Override
     public List<Integer> test(List<Instance<Double, Integer>> instances) {
-        List<Integer> predictions = new ArrayList<>();
+        List<Integer> predictions = new ArrayList<>(instances.size());
+        double[] w = scoringWeights;
 
         for (Instance<Double, Integer> instance : instances) {
-            double[] features = instance.getInput().stream()
-                    .mapToDouble(Double::doubleValue)
-                    .toArray();
-            predictions.add(predictClass(features));
+            List<Double> input = instance.getInput();
+            checkFeatures(input.size());
+            double z = w[0]; // bias
+            for (int j = 0; j < input.size(); j++) {
+                z += w[j + 1] * input.get(j);
+            }
+            predictions.add(z >= 0 ? 1 : 0);
         }
 
         return predictions;
     }
 
-    private double predict(double[] features) {
-        double z = weights[0]; // bias
-        for (int i = 0; i < features.length; i++) {
-            z += weights[i + 1] * features[i];
+    @Override
+    public int[] test(Dataset dataset) {
+        checkFeatures(dataset.numFeatures());
+        double[] features = dataset.rowMajor();
+        int[] predictions = new int[dataset.numRows()];
+        for (int i = 0; i < predictions.length; i++) {
+            // sigmoid(z) >= 0.5 exactly when z >= 0
+            predictions[i] = score(features, dataset.rowOffset(i)) >= 0 ? 1 : 0;
         }
-        return sigmoid(z);
+        return predictions;
+    }
+
+    // Probability of class 1 for the row of raw features starting at offset
+    public double predictProbability(double[] features, int offset) {
+        if (offset < 0 || features.length - offset < scoringWeights.length - 1) {
+            throw new IllegalArgumentException("Features must have length " + (scoringWeights.length - 1));
+        }
+        return sigmoid(score(features, offset));
+    }
+
+    // Probabilities of class 1 for out.length row-major rows of raw features. Allocates nothing,
+    // so it can sit on a hot scoring path with reused arrays.
+    public void predictProbabilities(double[] rows, double[] out) {
+        int numFeatures = scoringWeights.length - 1;
+        if (rows.length < (long) out.length * numFeatures) {
+            throw new IllegalArgumentException("Rows must hold " + out.length + " x " + numFeatures + " values");
+        }
+        for (int i = 0; i < out.length; i++) {
+            out[i] = sigmoid(score(rows, i * numFeatures));
+        }
+    }
+
+    // Writes the weights, the feature scaling and the learning rate, epochs, batch size and L2 settings
+    // to a ModelFile; the other training settings (seed, early stopping, optimizer, parallelism) are not kept
+    public void save(Path file) throws IOException {
+        double[] none = new double[0];
+        ModelFile.write(file, ModelType.LOGISTIC_REGRESSION,
+                new double[]{learningRate, l2},
+                new int[]{epochs, batchSize},
+                weights,
+                means == null ? none : means,
+                stds == null ? none : stds);
     }
 
-    private int predictClass(double[] features) {
-        return predict(features) >= 0.5 ? 1 : 0;
+    // Reads a model written by save(), ready to score or to continue training with trainBatch()
+    public static LogisticRegression load(Path file) throws IOException {
+        ModelFile model = ModelFile.open(file, ModelType.LOGISTIC_REGRESSION);
+        double[] settings = model.doubles(0);
+        int[] intSettings = model.ints(1);
+        double[] weights = model.doubles(2);
+        double[] means = model.doubles(3);
+        double[] stds = model.doubles(4);
+        int numFeatures = weights.length - 1;
+        if (settings.length != 2 || intSettings.length != 2 || numFeatures < 0
+                || means.length != stds.length || (means.length != 0 && means.length != numFeatures)) {
+            throw model.corrupt("inconsistent section lengths");
+        }
+
+        LogisticRegression regression;
+        try {
+            regression = new LogisticRegression(settings[0], intSettings[0]);
+            regression.setL2(settings[1]);
+            regression.setBatchSize(intSettings[1]);
+        } catch (IllegalArgumentException e) {
+            throw model.corrupt(e.getMessage());
+        }
+        regression.ensureWeights(numFeatures);
+        regression.weights = weights;
+        if (means.length > 0) {
+            regression.means = means;
+            regression.stds = stds;
+        }
+        regression.foldScaling();
+        return regression;
+    }
+
+    // Class 0 or 1 for every CSR row, in O(nnz)
+    public int[] test(SparseDataset dataset) {
+        checkFeatures(dataset.numFeatures());
+        int[] predictions = new int[dataset.numRows()];
+        for (int i = 0; i < predictions.length; i++) {
+            predictions[i] = score(dataset, i) >= 0 ? 1 : 0;
+        }
+        return predictions;
+    }
+
+    // Probabilities of class 1 for the first out.length CSR rows, allocating nothing
+    public void predictProbabilities(SparseDataset dataset, double[] out) {
+        checkFeatures(dataset.numFeatures());
+        if (out.length > dataset.numRows()) {
+            throw new IllegalArgumentException("Dataset has only " + dataset.numRows() + " rows");
+        }
+        for (int i = 0; i < out.length; i++) {
+            out[i] = sigmoid(score(dataset, i));
+        }
+    }
+
+    private double score(SparseDataset dataset, int row) {
+        return scoringWeights[0] + SparseKernels.dot(dataset.columnIndices(), dataset.values(),
+                dataset.rowStart(row), dataset.rowEnd(row), scoringWeights, 1);
+    }
+
+    // Log-odds of class 1 for a row of raw features
+    private double score(double[] features, int offset) {
+        double[] w = scoringWeights;
+        double z = w[0]; // bias
+        for (int j = 1; j < w.length; j++) {
+            z += w[j] * features[offset + j - 1];
+        }
+        return z;
+    }
+
+    private void checkFeatures(int numFeatures) {
+        if (numFeatures != scoringWeights.length - 1) {
+            throw new IllegalArgumentException("Expected " + (scoringWeights.length - 1)
+                    + " features but found " + numFeatures);
+        }
     }
 }
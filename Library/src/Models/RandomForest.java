@@ -0,0 +1,218 @@
+package Models;
+
+import DataProcessing.domain.ClassLabels;
+import DataProcessing.domain.Dataset;
+import DataProcessing.domain.Instance;
+import DataProcessing.domain.Model;
+import Models.tree.FeatureBins;
+import Models.tree.FlatTree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.IntConsumer;
+
+// Bagged decision trees. Every tree is trained on a bootstrap sample of the rows, passed to it as an
+// index array over the one shared feature matrix, and searches each split over a random subset of
+// the features. Trees are built concurrently, one per task, and predictions are majority votes.
+// Results depend only on the seed, not on the parallelism. Features must be numeric; labels may be of
+// any type, see ClassLabels.
+public class RandomForest<F extends Number, L> implements Model<F, L> {
+    // Rows voted on by one task in a parallel test
+    private static final int PREDICT_BLOCK = 256;
+
+    private final int numTrees;
+    private final int maxDepth;
+    private final int minSamplesLeaf;
+    // Features drawn per node, 0 for the square root of the feature count
+    private int maxFeatures;
+    private int histogramBins;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private long seed = 42;
+    private FlatTree[] trees;
+    // Sorted distinct training labels, votes are counted per position in this array
+    private int[] classLabels;
+    // Maps the class ids voted on back to the training labels
+    private ClassLabels<L> labels = ClassLabels.integers();
+    private int numFeatures;
+
+    public RandomForest(int numTrees) {
+        this(numTrees, Integer.MAX_VALUE, 1);
+    }
+
+    public RandomForest(int numTrees, int maxDepth, int minSamplesLeaf) {
+        if (numTrees <= 0) {
+            throw new IllegalArgumentException("Number of trees must be greater than 0");
+        }
+        if (maxDepth < 0) {
+            throw new IllegalArgumentException("Max depth cannot be negative");
+        }
+        if (minSamplesLeaf < 1) {
+            throw new IllegalArgumentException("Min samples per leaf must be at least 1");
+        }
+        this.numTrees = numTrees;
+        this.maxDepth = maxDepth;
+        this.minSamplesLeaf = minSamplesLeaf;
+    }
+
+    public void setMaxFeatures(int maxFeatures) {
+        if (maxFeatures < 0) {
+            throw new IllegalArgumentException("Max features cannot be negative");
+        }
+        this.maxFeatures = maxFeatures;
+    }
+
+    // Trains every tree in histogram mode; the data is binned once and the bins shared by all trees
+    public void setHistogramBins(int bins) {
+        if (bins != 0 && (bins < 2 || bins > FeatureBins.MAX_BINS)) {
+            throw new IllegalArgumentException("Number of bins must be 0 or between 2 and " + FeatureBins.MAX_BINS);
+        }
+        this.histogramBins = bins;
+    }
+
+    // Number of threads for training (one tree per task) and for test(Dataset), 1 runs on the calling thread
+    public void setParallelism(int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Parallelism must be greater than 0");
+        }
+        this.parallelism = parallelism;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    @Override
+    public void train(List<Instance<F, L>> instances) {
+        ClassLabels<L> mapping = ClassLabels.of(instances);
+        train(Dataset.of(instances, mapping.ids()));
+        this.labels = mapping;
+    }
+
+    @Override
+    public void train(Dataset dataset) {
+        if (dataset == null || dataset.numRows() == 0) {
+            throw new IllegalArgumentException("Training data cannot be null or empty");
+        }
+        int numRows = dataset.numRows();
+        int features = maxFeatures > 0 ? maxFeatures
+                : Math.max(1, (int) Math.round(Math.sqrt(dataset.numFeatures())));
+        // Build the shared, read-only inputs before any tree task reads them
+        FeatureBins bins = histogramBins > 0 ? new FeatureBins(dataset, histogramBins) : null;
+        if (bins == null) {
+            dataset.columnMajor();
+        }
+        long[] treeSeeds = new long[numTrees];
+        SplittableRandom seeds = new SplittableRandom(seed);
+        for (int t = 0; t < numTrees; t++) {
+            treeSeeds[t] = seeds.nextLong();
+        }
+
+        FlatTree[] built = new FlatTree[numTrees];
+        forEach(numTrees, t -> {
+            // Bootstrap sample: numRows draws with replacement, kept as row indices
+            SplittableRandom random = new SplittableRandom(treeSeeds[t]);
+            int[] sample = new int[numRows];
+            for (int i = 0; i < numRows; i++) {
+                sample[i] = random.nextInt(numRows);
+            }
+            DecisionTree<F, L> tree = new DecisionTree<>(maxDepth, minSamplesLeaf, 0.0);
+            tree.setParallelism(1);
+            tree.setMaxFeatures(features);
+            tree.setSeed(random.nextLong());
+            tree.train(dataset, bins, sample);
+            built[t] = tree.flatTree();
+        });
+
+        this.trees = built;
+        this.classLabels = Arrays.stream(dataset.labels()).distinct().sorted().toArray();
+        this.labels = ClassLabels.integers();
+        this.numFeatures = dataset.numFeatures();
+    }
+
+    @Override
+    public List<L> test(List<Instance<F, L>> instances) {
+        checkTrained();
+        double[] rows = new double[instances.size() * numFeatures];
+        for (int i = 0; i < instances.size(); i++) {
+            List<F> input = instances.get(i).getInput();
+            if (input.size() != numFeatures) {
+                throw new IllegalArgumentException("Expected " + numFeatures + " features but found " + input.size());
+            }
+            for (int f = 0; f < numFeatures; f++) {
+                rows[i * numFeatures + f] = input.get(f).doubleValue();
+            }
+        }
+        return labels.labels(predict(rows, instances.size()));
+    }
+
+    @Override
+    public int[] test(Dataset dataset) {
+        checkTrained();
+        if (dataset.numFeatures() != numFeatures) {
+            throw new IllegalArgumentException("Expected " + numFeatures + " features but found " + dataset.numFeatures());
+        }
+        return predict(dataset.rowMajor(), dataset.numRows());
+    }
+
+    // Blocks of rows are voted on in parallel; each block runs every tree's batch predict over its
+    // rows and tallies the votes, ties going to the smaller label
+    private int[] predict(double[] rows, int numRows) {
+        int numClasses = classLabels.length;
+        int[] predictions = new int[numRows];
+        int numBlocks = (numRows + PREDICT_BLOCK - 1) / PREDICT_BLOCK;
+        forEach(numBlocks, block -> {
+            int first = block * PREDICT_BLOCK;
+            int count = Math.min(PREDICT_BLOCK, numRows - first);
+            int[] treePredictions = new int[count];
+            int[] votes = new int[count * numClasses];
+            for (FlatTree tree : trees) {
+                tree.predict(rows, first * numFeatures, numFeatures, count, treePredictions, 0);
+                for (int i = 0; i < count; i++) {
+                    votes[i * numClasses + Arrays.binarySearch(classLabels, treePredictions[i])]++;
+                }
+            }
+            for (int i = 0; i < count; i++) {
+                int best = 0;
+                for (int c = 1; c < numClasses; c++) {
+                    if (votes[i * numClasses + c] > votes[i * numClasses + best]) {
+                        best = c;
+                    }
+                }
+                predictions[first + i] = classLabels[best];
+            }
+        });
+        return predictions;
+    }
+
+    // Runs task(0..count-1), one fork-join task each when parallel
+    private void forEach(int count, IntConsumer task) {
+        if (parallelism == 1 || count <= 1) {
+            for (int i = 0; i < count; i++) {
+                task.accept(i);
+            }
+            return;
+        }
+
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int index = i;
+            tasks.add(ForkJoinTask.adapt(() -> task.accept(index)));
+        }
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private void checkTrained() {
+        if (trees == null) {
+            throw new IllegalStateException("Model has not been trained");
+        }
+    }
+}
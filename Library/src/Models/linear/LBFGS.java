@@ -0,0 +1,167 @@
+package Models.linear;
+
+// Limited-memory BFGS (Nocedal & Wright, algorithm 7.5): the search direction comes from the last
+// memory pairs of weight and gradient changes, steps are chosen by a backtracking line search on
+// the Armijo condition. Converges in tens of passes where plain gradient descent needs hundreds.
+public class LBFGS implements Optimizer {
+    public static final int DEFAULT_MEMORY = 10;
+    public static final int DEFAULT_MAX_ITERATIONS = 100;
+    public static final double DEFAULT_TOLERANCE = 1e-6;
+    // Sufficient decrease constant and step shrink factor of the line search
+    private static final double ARMIJO = 1e-4;
+    private static final double SHRINK = 0.5;
+    private static final int MAX_LINE_SEARCH_STEPS = 40;
+
+    private final int memory;
+    private final int maxIterations;
+    private final double tolerance;
+
+    public LBFGS() {
+        this(DEFAULT_MEMORY, DEFAULT_MAX_ITERATIONS, DEFAULT_TOLERANCE);
+    }
+
+    // Stops after maxIterations, or once the gradient norm or the relative loss decrease falls below tolerance
+    public LBFGS(int memory, int maxIterations, double tolerance) {
+        if (memory <= 0 || maxIterations <= 0) {
+            throw new IllegalArgumentException("Memory and max iterations must be greater than 0");
+        }
+        if (tolerance < 0) {
+            throw new IllegalArgumentException("Tolerance cannot be negative");
+        }
+        this.memory = memory;
+        this.maxIterations = maxIterations;
+        this.tolerance = tolerance;
+    }
+
+    @Override
+    public void minimize(LogisticLoss loss, double[] weights) {
+        int n = loss.dimension();
+        double[][] s = new double[memory][n];
+        double[][] y = new double[memory][n];
+        double[] rho = new double[memory];
+        double[] alpha = new double[memory];
+        double[] gradient = new double[n];
+        double[] direction = new double[n];
+        double[] candidate = new double[n];
+        double[] candidateGradient = new double[n];
+        // The newest pair is built here and swapped into the ring only if it is kept
+        double[] newS = new double[n];
+        double[] newY = new double[n];
+        // Pairs are stored in a ring, newest at (first + count - 1) % memory
+        int first = 0;
+        int count = 0;
+
+        double value = loss.evaluate(weights, gradient);
+        for (int iteration = 0; iteration < maxIterations; iteration++) {
+            if (norm(gradient) <= tolerance * Math.max(1.0, norm(weights))) {
+                return;
+            }
+
+            // Two-loop recursion: direction = -H * gradient
+            for (int j = 0; j < n; j++) {
+                direction[j] = -gradient[j];
+            }
+            for (int k = count - 1; k >= 0; k--) {
+                int slot = (first + k) % memory;
+                alpha[slot] = rho[slot] * dot(s[slot], direction);
+                axpy(-alpha[slot], y[slot], direction);
+            }
+            if (count > 0) {
+                int newest = (first + count - 1) % memory;
+                scale(dot(s[newest], y[newest]) / dot(y[newest], y[newest]), direction);
+            }
+            for (int k = 0; k < count; k++) {
+                int slot = (first + k) % memory;
+                double beta = rho[slot] * dot(y[slot], direction);
+                axpy(alpha[slot] - beta, s[slot], direction);
+            }
+
+            double slope = dot(gradient, direction);
+            if (slope >= 0) {
+                // Not a descent direction, restart from steepest descent
+                count = 0;
+                for (int j = 0; j < n; j++) {
+                    direction[j] = -gradient[j];
+                }
+                slope = dot(gradient, direction);
+            }
+
+            // Without curvature information yet, start with a step of unit length
+            double step = count == 0 ? Math.min(1.0, 1.0 / norm(gradient)) : 1.0;
+            double candidateValue = Double.NaN;
+            boolean accepted = false;
+            for (int attempt = 0; attempt < MAX_LINE_SEARCH_STEPS; attempt++) {
+                for (int j = 0; j < n; j++) {
+                    candidate[j] = weights[j] + step * direction[j];
+                }
+                candidateValue = loss.evaluate(candidate, candidateGradient);
+                if (candidateValue <= value + ARMIJO * step * slope) {
+                    accepted = true;
+                    break;
+                }
+                step *= SHRINK;
+            }
+            if (!accepted) {
+                return;
+            }
+
+            // Keep the pair only if it has positive curvature, so the implied Hessian stays positive definite.
+            // A rejected pair leaves the ring untouched.
+            double curvature = 0.0;
+            for (int j = 0; j < n; j++) {
+                newS[j] = candidate[j] - weights[j];
+                newY[j] = candidateGradient[j] - gradient[j];
+                curvature += newS[j] * newY[j];
+            }
+            if (curvature > 1e-10 * dot(newY, newY)) {
+                // When full, the oldest pair is replaced and its arrays become the next scratch
+                int slot = count < memory ? (first + count) % memory : first;
+                double[] evicted = s[slot];
+                s[slot] = newS;
+                newS = evicted;
+                evicted = y[slot];
+                y[slot] = newY;
+                newY = evicted;
+                rho[slot] = 1.0 / curvature;
+                if (count < memory) {
+                    count++;
+                } else {
+                    first = (first + 1) % memory;
+                }
+            }
+
+            double decrease = value - candidateValue;
+            System.arraycopy(candidate, 0, weights, 0, n);
+            System.arraycopy(candidateGradient, 0, gradient, 0, n);
+            value = candidateValue;
+            if (decrease <= tolerance * Math.max(1.0, Math.abs(value))) {
+                return;
+            }
+        }
+    }
+
+    static double dot(double[] a, double[] b) {
+        double sum = 0.0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    static double norm(double[] a) {
+        return Math.sqrt(dot(a, a));
+    }
+
+    // y += a * x
+    private static void axpy(double a, double[] x, double[] y) {
+        for (int i = 0; i < x.length; i++) {
+            y[i] += a * x[i];
+        }
+    }
+
+    private static void scale(double a, double[] x) {
+        for (int i = 0; i < x.length; i++) {
+            x[i] *= a;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package Models.linear;
+
+import DataProcessing.domain.SparseDataset;
+import utils.SparseKernels;
+
+import java.util.Arrays;
+
+// Mean log-loss of a logistic model over a row-major feature matrix plus an L2 penalty,
+// (1/n) * sum(log(1 + e^z) - y * z) + (l2 / 2) * |w|^2 with z = w0 + w . x and the bias w0 unpenalized.
+// Weights and gradients are laid out bias first. Every evaluation is one fused pass over the rows
+// that computes z, the loss and the gradient (and optionally the Hessian) row by row.
+// Over CSR rows the pass only visits non-zeros, so it costs O(nnz) instead of O(n * d).
+public class LogisticLoss {
+    // Exactly one of features and sparse is set
+    private final double[] features;
+    private final SparseDataset sparse;
+    private final int[] labels;
+    private final int numRows;
+    private final int numFeatures;
+    private final double l2;
+    private int evaluations;
+
+    public LogisticLoss(double[] features, int[] labels, int numFeatures, double l2) {
+        if (numFeatures <= 0 || features.length != (long) labels.length * numFeatures) {
+            throw new IllegalArgumentException("Feature array must hold exactly "
+                    + labels.length + " x " + numFeatures + " values");
+        }
+        if (labels.length == 0) {
+            throw new IllegalArgumentException("Training data cannot be empty");
+        }
+        if (l2 < 0) {
+            throw new IllegalArgumentException("L2 penalty cannot be negative");
+        }
+        this.features = features;
+        this.sparse = null;
+        this.labels = labels;
+        this.numRows = labels.length;
+        this.numFeatures = numFeatures;
+        this.l2 = l2;
+    }
+
+    // Loss over the CSR rows of data, with labels (0 or 1) given per row
+    public LogisticLoss(SparseDataset data, int[] labels, double l2) {
+        if (labels.length != data.numRows()) {
+            throw new IllegalArgumentException("Expected " + data.numRows() + " labels but got " + labels.length);
+        }
+        if (labels.length == 0) {
+            throw new IllegalArgumentException("Training data cannot be empty");
+        }
+        if (l2 < 0) {
+            throw new IllegalArgumentException("L2 penalty cannot be negative");
+        }
+        this.features = null;
+        this.sparse = data;
+        this.labels = labels;
+        this.numRows = labels.length;
+        this.numFeatures = data.numFeatures();
+        this.l2 = l2;
+    }
+
+    // Number of weights, the bias included
+    public int dimension() {
+        return numFeatures + 1;
+    }
+
+    // Passes made over the data so far
+    public int evaluations() {
+        return evaluations;
+    }
+
+    // Returns the loss at weights and writes its gradient
+    public double evaluate(double[] weights, double[] gradient) {
+        return evaluate(weights, gradient, null);
+    }
+
+    // Same as evaluate, also writing the Hessian row-major into hessian (dimension() squared values)
+    // when it is not null. Only the lower triangle is accumulated per row, then mirrored.
+    public double evaluate(double[] weights, double[] gradient, double[] hessian) {
+        evaluations++;
+        int dimension = numFeatures + 1;
+        Arrays.fill(gradient, 0, dimension, 0.0);
+        if (hessian != null) {
+            Arrays.fill(hessian, 0, dimension * dimension, 0.0);
+        }
+
+        double loss = 0.0;
+        for (int i = 0; i < numRows; i++) {
+            int offset = i * numFeatures;
+            double z = weights[0];
+            if (sparse != null) {
+                z += SparseKernels.dot(sparse.columnIndices(), sparse.values(), sparse.rowStart(i), sparse.rowEnd(i),
+                        weights, 1);
+            } else {
+                for (int j = 0; j < numFeatures; j++) {
+                    z += weights[j + 1] * features[offset + j];
+                }
+            }
+            // log(1 + e^z) - y * z and its derivative p - y, finite for large |z|
+            double p = 1.0 / (1.0 + Math.exp(-z));
+            loss += Math.max(z, 0) + Math.log1p(Math.exp(-Math.abs(z))) - labels[i] * z;
+            double error = p - labels[i];
+
+            gradient[0] += error;
+            if (sparse != null) {
+                addSparseRow(gradient, hessian, i, error, p * (1.0 - p));
+                continue;
+            }
+            for (int j = 0; j < numFeatures; j++) {
+                gradient[j + 1] += error * features[offset + j];
+            }
+            if (hessian != null) {
+                addOuterProduct(hessian, offset, p * (1.0 - p));
+            }
+        }
+
+        double scale = 1.0 / numRows;
+        loss *= scale;
+        for (int j = 0; j < dimension; j++) {
+            gradient[j] *= scale;
+        }
+        for (int j = 1; j < dimension; j++) {
+            loss += 0.5 * l2 * weights[j] * weights[j];
+            gradient[j] += l2 * weights[j];
+        }
+        if (hessian != null) {
+            for (int a = 0; a < dimension; a++) {
+                for (int b = 0; b <= a; b++) {
+                    double value = hessian[a * dimension + b] * scale + (a == b && a > 0 ? l2 : 0.0);
+                    hessian[a * dimension + b] = value;
+                    hessian[b * dimension + a] = value;
+                }
+            }
+        }
+        return loss;
+    }
+
+    // Gradient and (lower triangle) Hessian terms of CSR row i, over its non-zeros and pairs of them only
+    private void addSparseRow(double[] gradient, double[] hessian, int i, double error, double weight) {
+        int[] columns = sparse.columnIndices();
+        double[] values = sparse.values();
+        int dimension = numFeatures + 1;
+        for (int k = sparse.rowStart(i); k < sparse.rowEnd(i); k++) {
+            gradient[columns[k] + 1] += error * values[k];
+        }
+        if (hessian == null) {
+            return;
+        }
+        hessian[0] += weight;
+        for (int k = sparse.rowStart(i); k < sparse.rowEnd(i); k++) {
+            // Columns increase within a row, so every pair (k, m <= k) lands in the lower triangle
+            double xa = weight * values[k];
+            int rowStart = (columns[k] + 1) * dimension;
+            hessian[rowStart] += xa;
+            for (int m = sparse.rowStart(i); m <= k; m++) {
+                hessian[rowStart + columns[m] + 1] += xa * values[m];
+            }
+        }
+    }
+
+    // Adds weight * x x^T for the row at offset, x having a leading 1 for the bias (lower triangle only)
+    private void addOuterProduct(double[] hessian, int offset, double weight) {
+        int dimension = numFeatures + 1;
+        hessian[0] += weight;
+        for (int a = 1; a < dimension; a++) {
+            double xa = weight * features[offset + a - 1];
+            int rowStart = a * dimension;
+            hessian[rowStart] += xa;
+            for (int b = 1; b <= a; b++) {
+                hessian[rowStart + b] += xa * features[offset + b - 1];
+            }
+        }
+    }
+}
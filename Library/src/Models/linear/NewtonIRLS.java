@@ -0,0 +1,155 @@
+package Models.linear;
+
+// Newton's method on the logistic loss, which for this loss is iteratively reweighted least squares:
+// every iteration forms the full Hessian X^T W X in the same pass as the gradient and solves for the
+// step with a Cholesky factorization. Typically converges in under ten passes, but each costs
+// O(n * d^2) plus an O(d^3) solve, so it is meant for problems with at most a few hundred features.
+public class NewtonIRLS implements Optimizer {
+    public static final int DEFAULT_MAX_ITERATIONS = 25;
+    public static final double DEFAULT_TOLERANCE = 1e-8;
+    // Largest number of weights (bias included) accepted; the dense Hessian needs dimension^2 doubles
+    public static final int MAX_DIMENSION = 2048;
+    private static final double ARMIJO = 1e-4;
+    private static final int MAX_LINE_SEARCH_STEPS = 40;
+    // Ridge increases before a Hessian is declared unusable; the ridge then exceeds its trace by far
+    private static final int MAX_RIDGE_STEPS = 40;
+
+    private final int maxIterations;
+    private final double tolerance;
+
+    public NewtonIRLS() {
+        this(DEFAULT_MAX_ITERATIONS, DEFAULT_TOLERANCE);
+    }
+
+    // Stops after maxIterations, or once half the Newton decrement (the loss reduction a full step
+    // predicts) falls below tolerance
+    public NewtonIRLS(int maxIterations, double tolerance) {
+        if (maxIterations <= 0) {
+            throw new IllegalArgumentException("Max iterations must be greater than 0");
+        }
+        if (tolerance < 0) {
+            throw new IllegalArgumentException("Tolerance cannot be negative");
+        }
+        this.maxIterations = maxIterations;
+        this.tolerance = tolerance;
+    }
+
+    @Override
+    public void minimize(LogisticLoss loss, double[] weights) {
+        int n = loss.dimension();
+        if (n > MAX_DIMENSION) {
+            throw new IllegalArgumentException("Newton's method supports at most " + MAX_DIMENSION
+                    + " weights but the problem has " + n + "; use LBFGS instead");
+        }
+        double[] gradient = new double[n];
+        double[] hessian = new double[n * n];
+        double[] direction = new double[n];
+        double[] candidate = new double[n];
+        double[] candidateGradient = new double[n];
+        double[] candidateHessian = new double[n * n];
+
+        double value = loss.evaluate(weights, gradient, hessian);
+        for (int iteration = 0; iteration < maxIterations; iteration++) {
+            for (int j = 0; j < n; j++) {
+                direction[j] = -gradient[j];
+            }
+            solve(hessian, direction, n);
+
+            double slope = LBFGS.dot(gradient, direction);
+            if (-slope / 2 <= tolerance) {
+                return;
+            }
+
+            // The full step is almost always taken; backtrack when far from the optimum. Candidates are
+            // evaluated with their Hessian, so an accepted step needs no extra pass.
+            double step = 1.0;
+            double candidateValue = Double.NaN;
+            boolean accepted = false;
+            for (int attempt = 0; attempt < MAX_LINE_SEARCH_STEPS; attempt++) {
+                for (int j = 0; j < n; j++) {
+                    candidate[j] = weights[j] + step * direction[j];
+                }
+                candidateValue = loss.evaluate(candidate, candidateGradient, candidateHessian);
+                if (candidateValue <= value + ARMIJO * step * slope) {
+                    accepted = true;
+                    break;
+                }
+                step *= 0.5;
+            }
+            if (!accepted) {
+                return;
+            }
+            System.arraycopy(candidate, 0, weights, 0, n);
+            System.arraycopy(candidateGradient, 0, gradient, 0, n);
+            double[] swap = hessian;
+            hessian = candidateHessian;
+            candidateHessian = swap;
+            value = candidateValue;
+        }
+    }
+
+    // Solves hessian * x = b in place of b with a Cholesky factorization, overwriting hessian.
+    // A Hessian that is singular or nearly so (separable data, constant features, no penalty)
+    // gets a growing ridge on its diagonal until the factorization succeeds.
+    private static void solve(double[] hessian, double[] b, int n) {
+        double[] original = hessian.clone();
+        double trace = 0.0;
+        for (int i = 0; i < n; i++) {
+            trace += original[i * n + i];
+        }
+        if (!Double.isFinite(trace)) {
+            throw new IllegalStateException("Hessian is not finite; check the features for NaN or infinite values");
+        }
+        double ridge = 0.0;
+        int ridgeSteps = 0;
+        while (!cholesky(hessian, n)) {
+            // Off-diagonal NaN or infinity survives any ridge
+            if (++ridgeSteps > MAX_RIDGE_STEPS) {
+                throw new IllegalStateException("Hessian could not be factorized; check the features for NaN or infinite values");
+            }
+            ridge = ridge == 0.0 ? 1e-10 * Math.max(trace / n, 1e-12) : ridge * 10;
+            System.arraycopy(original, 0, hessian, 0, original.length);
+            for (int i = 0; i < n; i++) {
+                hessian[i * n + i] += ridge;
+            }
+        }
+
+        // Forward substitution with L, then back substitution with L^T
+        for (int i = 0; i < n; i++) {
+            double sum = b[i];
+            for (int k = 0; k < i; k++) {
+                sum -= hessian[i * n + k] * b[k];
+            }
+            b[i] = sum / hessian[i * n + i];
+        }
+        for (int i = n - 1; i >= 0; i--) {
+            double sum = b[i];
+            for (int k = i + 1; k < n; k++) {
+                sum -= hessian[k * n + i] * b[k];
+            }
+            b[i] = sum / hessian[i * n + i];
+        }
+    }
+
+    // Replaces the lower triangle of the row-major matrix with its Cholesky factor L,
+    // returns false if the matrix is not numerically positive definite
+    private static boolean cholesky(double[] matrix, int n) {
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j <= i; j++) {
+                double sum = matrix[i * n + j];
+                for (int k = 0; k < j; k++) {
+                    sum -= matrix[i * n + k] * matrix[j * n + k];
+                }
+                if (i == j) {
+                    if (!(sum > 0)) {
+                        return false;
+                    }
+                    matrix[i * n + i] = Math.sqrt(sum);
+                } else {
+                    matrix[i * n + j] = sum / matrix[j * n + j];
+                }
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,7 @@
+package Models.linear;
+
+// Full-batch minimizer of a LogisticLoss, see LogisticRegression.setOptimizer
+public interface Optimizer {
+    // Minimizes loss starting from weights (bias first), which receive the result
+    void minimize(LogisticLoss loss, double[] weights);
+}
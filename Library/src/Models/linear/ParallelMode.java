@@ -0,0 +1,13 @@
+package Models.linear;
+
+// How LogisticRegression spreads gradient descent over several threads
+public enum ParallelMode {
+    // Every mini-batch is split into one shard per thread whose gradients are computed in parallel and
+    // summed by a fixed pairwise reduction before one update. Runs with the same seed and thread count
+    // give the same result; another thread count changes the summation order and so the last bits.
+    SYNCHRONOUS,
+    // Every thread runs mini-batch SGD over its own shard of the rows and updates the shared weights
+    // without locking (Niu et al.). Scales best on sparse updates, but the interleaving of updates,
+    // and so the exact result, varies from run to run when more than one thread is used.
+    HOGWILD
+}
@@ -0,0 +1,168 @@
+package Models.neighbors;
+
+import DataProcessing.domain.Dataset;
+import utils.PrimitiveDistanceMetric;
+
+import java.util.Arrays;
+
+// Ball tree stored as parallel node arrays. Every node keeps the centroid of its rows and the
+// largest distance from it to one of them; a node is skipped when the query is farther from the
+// ball than the current k-th neighbour. The pruning relies on the triangle inequality, so results
+// are exact for true metrics and approximate for metrics that violate it.
+public class BallTreeIndex implements NeighborIndex {
+    private static final int LEAF_SIZE = 16;
+
+    private final PrimitiveDistanceMetric metric;
+    private final int numFeatures;
+    private final double[] points;
+    private final int[] rowIds;
+    private final ThreadLocal<SearchState> searchStates = ThreadLocal.withInitial(SearchState::new);
+    private final IndexStats stats;
+
+    private double[] centers;
+    private double[] radius;
+    private int[] left;
+    private int[] right;
+    private int[] start;
+    private int[] end;
+    private int numNodes;
+    private int depth;
+
+    public BallTreeIndex(Dataset data, PrimitiveDistanceMetric metric) {
+        long buildStart = System.nanoTime();
+        this.metric = metric;
+        this.numFeatures = data.numFeatures();
+
+        int capacity = 2 * (data.numRows() / LEAF_SIZE + 1);
+        centers = new double[capacity * numFeatures];
+        radius = new double[capacity];
+        left = new int[capacity];
+        right = new int[capacity];
+        start = new int[capacity];
+        end = new int[capacity];
+
+        int[] rows = RowSelect.identity(data.numRows());
+        double[] features = data.rowMajor();
+        // Split first so the rows are in their final order, then the balls are computed over contiguous points
+        split(rows, 0, rows.length, features, 1);
+        this.points = RowSelect.gather(rows, features, numFeatures);
+        this.rowIds = rows;
+        for (int node = 0; node < numNodes; node++) {
+            fitBall(node);
+        }
+        this.stats = new IndexStats(System.nanoTime() - buildStart, numNodes, depth);
+    }
+
+    private int split(int[] rows, int from, int to, double[] features, int level) {
+        int node = newNode(from, to);
+        depth = Math.max(depth, level);
+        if (to - from <= LEAF_SIZE) {
+            return node;
+        }
+        int axis = RowSelect.widestAxis(rows, from, to, features, numFeatures);
+        if (axis < 0) {
+            return node;
+        }
+
+        int mid = (from + to) >>> 1;
+        RowSelect.select(rows, from, to, mid, features, numFeatures, axis);
+        int leftChild = split(rows, from, mid, features, level + 1);
+        int rightChild = split(rows, mid, to, features, level + 1);
+        left[node] = leftChild;
+        right[node] = rightChild;
+        return node;
+    }
+
+    private void fitBall(int node) {
+        int center = node * numFeatures;
+        int count = end[node] - start[node];
+        for (int p = start[node]; p < end[node]; p++) {
+            for (int j = 0; j < numFeatures; j++) {
+                centers[center + j] += points[p * numFeatures + j];
+            }
+        }
+        for (int j = 0; j < numFeatures; j++) {
+            centers[center + j] /= count;
+        }
+
+        double maxDistance = 0.0;
+        for (int p = start[node]; p < end[node]; p++) {
+            maxDistance = Math.max(maxDistance, metric.distance(centers, center, points, p * numFeatures, numFeatures));
+        }
+        radius[node] = maxDistance;
+    }
+
+    private int newNode(int from, int to) {
+        if (numNodes == radius.length) {
+            int capacity = numNodes * 2;
+            centers = Arrays.copyOf(centers, capacity * numFeatures);
+            radius = Arrays.copyOf(radius, capacity);
+            left = Arrays.copyOf(left, capacity);
+            right = Arrays.copyOf(right, capacity);
+            start = Arrays.copyOf(start, capacity);
+            end = Arrays.copyOf(end, capacity);
+        }
+        int node = numNodes++;
+        left[node] = -1;
+        right[node] = -1;
+        start[node] = from;
+        end[node] = to;
+        return node;
+    }
+
+    @Override
+    public void search(double[] query, int offset, NeighborHeap heap) {
+        long begin = System.nanoTime();
+        SearchState state = searchStates.get();
+        state.computations = 1;
+
+        heap.clear();
+        search(0, centerDistance(0, query, offset), query, offset, heap, state);
+        stats.recordQuery(state.computations, System.nanoTime() - begin);
+    }
+
+    // centerDistance is the true distance from the query to this node's centroid
+    private void search(int node, double centerDistance, double[] query, int offset, NeighborHeap heap, SearchState state) {
+        double gap = centerDistance - radius[node];
+        if (gap > 0 && metric.toReducedDistance(gap) > heap.bound()) {
+            return;
+        }
+
+        if (left[node] < 0) {
+            for (int p = start[node]; p < end[node]; p++) {
+                double bound = heap.bound();
+                double distance = metric.reducedDistance(query, offset, points, p * numFeatures, numFeatures, bound);
+                if (distance <= bound) {
+                    heap.offer(rowIds[p], distance);
+                }
+            }
+            state.computations += end[node] - start[node];
+            return;
+        }
+
+        // Visit the child whose centroid is closer first so the bound tightens sooner
+        double leftDistance = centerDistance(left[node], query, offset);
+        double rightDistance = centerDistance(right[node], query, offset);
+        state.computations += 2;
+        if (leftDistance <= rightDistance) {
+            search(left[node], leftDistance, query, offset, heap, state);
+            search(right[node], rightDistance, query, offset, heap, state);
+        } else {
+            search(right[node], rightDistance, query, offset, heap, state);
+            search(left[node], leftDistance, query, offset, heap, state);
+        }
+    }
+
+    private double centerDistance(int node, double[] query, int offset) {
+        return metric.distance(query, offset, centers, node * numFeatures, numFeatures);
+    }
+
+    @Override
+    public IndexStats stats() {
+        return stats;
+    }
+
+    private static class SearchState {
+        long computations;
+    }
+}
@@ -0,0 +1,125 @@
+package Models.neighbors;
+
+import DataProcessing.domain.Dataset;
+import utils.PreparedRows;
+import utils.PrimitiveDistanceMetric;
+
+public class BruteForceIndex implements NeighborIndex {
+    // Rows per call to the metric's column kernel
+    private static final int SCAN_BLOCK = 1024;
+    // Below this many rows the row-by-row scan is already cheap and the kernels would not warm up
+    private static final int MIN_COLUMN_SCAN_ROWS = 4 * SCAN_BLOCK;
+
+    private final Dataset data;
+    private final PrimitiveDistanceMetric metric;
+    private final int tileRows;
+    // Rows transformed by the metric for scanning, null when it has no such form
+    private final PreparedRows prepared;
+    // True when the metric can score a block of rows at once from the column-major copy
+    private final boolean columnScan;
+    private final ThreadLocal<double[]> scratch = ThreadLocal.withInitial(() -> new double[SCAN_BLOCK]);
+    private final IndexStats stats;
+
+    public BruteForceIndex(Dataset data, PrimitiveDistanceMetric metric) {
+        this(data, metric, 0);
+    }
+
+    // With tileRows > 0, searchBlock walks the training rows in tiles of that many rows and runs
+    // every query of the block against a tile before moving on, so the tile stays in cache
+    public BruteForceIndex(Dataset data, PrimitiveDistanceMetric metric, int tileRows) {
+        if (tileRows < 0) {
+            throw new IllegalArgumentException("Tile size cannot be negative");
+        }
+        long start = System.nanoTime();
+        this.data = data;
+        this.metric = metric;
+        this.tileRows = tileRows;
+        boolean large = data.numRows() >= MIN_COLUMN_SCAN_ROWS;
+        this.prepared = large ? metric.prepare(data.rowMajor(), data.numRows(), data.numFeatures()) : null;
+        // An empty range only reports whether the metric has a column kernel
+        this.columnScan = large && prepared == null
+                && metric.reducedDistances(new double[data.numFeatures()], 0, new double[0],
+                        data.numRows(), data.numFeatures(), 0, 0, new double[0]);
+        if (columnScan) {
+            data.columnMajor();
+        } else {
+            data.rowMajor();
+        }
+        this.stats = new IndexStats(System.nanoTime() - start, 1, 0);
+    }
+
+    @Override
+    public void search(double[] query, int offset, NeighborHeap heap) {
+        long start = System.nanoTime();
+        heap.clear();
+        scan(query, offset, heap, 0, data.numRows());
+        stats.recordQuery(data.numRows(), System.nanoTime() - start);
+    }
+
+    @Override
+    public void searchBlock(double[] queries, int offset, int numFeatures, int count, NeighborHeap[] heaps) {
+        if (tileRows == 0) {
+            NeighborIndex.super.searchBlock(queries, offset, numFeatures, count, heaps);
+            return;
+        }
+
+        long start = System.nanoTime();
+        int numRows = data.numRows();
+        for (int q = 0; q < count; q++) {
+            heaps[q].clear();
+        }
+
+        for (int tileStart = 0; tileStart < numRows; tileStart += tileRows) {
+            int tileEnd = Math.min(numRows, tileStart + tileRows);
+            for (int q = 0; q < count; q++) {
+                scan(queries, offset + q * numFeatures, heaps[q], tileStart, tileEnd);
+            }
+        }
+
+        long elapsedPerQuery = (System.nanoTime() - start) / Math.max(1, count);
+        for (int q = 0; q < count; q++) {
+            stats.recordQuery(numRows, elapsedPerQuery);
+        }
+    }
+
+    // Offers rows [from, to) to the heap. Every path offers exactly the rows within the current
+    // k-th distance; prepared rows may round distances differently in the last bits.
+    private void scan(double[] query, int offset, NeighborHeap heap, int from, int to) {
+        int numFeatures = data.numFeatures();
+        if (prepared != null || columnScan) {
+            // Score a block of rows with the metric's kernel, then keep the ones within the bound
+            double[] distances = scratch.get();
+            for (int blockStart = from; blockStart < to; blockStart += SCAN_BLOCK) {
+                int blockEnd = Math.min(to, blockStart + SCAN_BLOCK);
+                if (prepared != null) {
+                    prepared.reducedDistances(query, offset, blockStart, blockEnd, distances);
+                } else {
+                    metric.reducedDistances(query, offset, data.columnMajor(), data.numRows(), numFeatures,
+                            blockStart, blockEnd, distances);
+                }
+                for (int i = blockStart; i < blockEnd; i++) {
+                    double distance = distances[i - blockStart];
+                    if (distance <= heap.bound()) {
+                        heap.offer(i, distance);
+                    }
+                }
+            }
+            return;
+        }
+
+        // Once the heap is full, rows farther than the current k-th are abandoned early
+        double[] features = data.rowMajor();
+        for (int i = from; i < to; i++) {
+            double bound = heap.bound();
+            double distance = metric.reducedDistance(query, offset, features, data.rowOffset(i), numFeatures, bound);
+            if (distance <= bound) {
+                heap.offer(i, distance);
+            }
+        }
+    }
+
+    @Override
+    public IndexStats stats() {
+        return stats;
+    }
+}
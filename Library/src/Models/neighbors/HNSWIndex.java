@@ -0,0 +1,474 @@
+package Models.neighbors;
+
+import DataProcessing.domain.Dataset;
+import utils.PrimitiveDistanceMetric;
+
+import java.util.Arrays;
+import java.util.Random;
+
+// Hierarchical navigable small world graph (Malkov & Yashunin). Every row is a node on layer 0 and,
+// with geometrically falling probability, on the layers above; a query walks greedily down from the
+// top layer and then runs a best-first search over layer 0 keeping efSearch candidates.
+// Results are approximate: m and efConstruction trade build time and memory for graph quality,
+// efSearch trades query time for recall. The build is sequential and seeded, so it is reproducible.
+public class HNSWIndex implements NeighborIndex {
+    public static final int DEFAULT_M = 16;
+    public static final int DEFAULT_EF_CONSTRUCTION = 200;
+    public static final int DEFAULT_EF_SEARCH = 64;
+    public static final long DEFAULT_SEED = 42;
+    private static final int MAX_LEVEL = 16;
+
+    private final PrimitiveDistanceMetric metric;
+    private final int numFeatures;
+    private final double[] points;
+    private final int m;
+    private final int maxM0;
+    private final int efConstruction;
+    private final int efSearch;
+    private final int[] levels;
+    // Layer 0 links, maxM0 + 1 slots per node: the link count followed by the links
+    private final int[] links0;
+    // Links on layers 1..level of each node, m + 1 slots per layer laid out like links0
+    private final int[][] upperLinks;
+    private final ThreadLocal<SearchState> searchStates;
+    private final IndexStats stats;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    public HNSWIndex(Dataset data, PrimitiveDistanceMetric metric) {
+        this(data, metric, DEFAULT_M, DEFAULT_EF_CONSTRUCTION, DEFAULT_EF_SEARCH, DEFAULT_SEED);
+    }
+
+    public HNSWIndex(Dataset data, PrimitiveDistanceMetric metric, int m, int efConstruction, int efSearch, long seed) {
+        if (m < 2) {
+            throw new IllegalArgumentException("M must be at least 2");
+        }
+        if (efConstruction <= 0 || efSearch <= 0) {
+            throw new IllegalArgumentException("ef values must be greater than 0");
+        }
+        long buildStart = System.nanoTime();
+        int numRows = data.numRows();
+        this.metric = metric;
+        this.numFeatures = data.numFeatures();
+        this.points = data.rowMajor();
+        this.m = m;
+        this.maxM0 = 2 * m;
+        this.efConstruction = Math.max(efConstruction, m);
+        this.efSearch = efSearch;
+        this.levels = new int[numRows];
+        this.links0 = new int[numRows * (maxM0 + 1)];
+        this.upperLinks = new int[numRows][];
+        this.searchStates = ThreadLocal.withInitial(() -> new SearchState(numRows));
+
+        Random random = new Random(seed);
+        double levelScale = 1.0 / Math.log(m);
+        SearchState state = new SearchState(numRows);
+        for (int node = 0; node < numRows; node++) {
+            int level = Math.min(MAX_LEVEL, (int) (-Math.log(1.0 - random.nextDouble()) * levelScale));
+            levels[node] = level;
+            if (level > 0) {
+                upperLinks[node] = new int[level * (m + 1)];
+            }
+            insert(node, state);
+        }
+        this.stats = new IndexStats(System.nanoTime() - buildStart, numRows, maxLevel + 1);
+    }
+
+    // Restores a graph saved through levels(), layer0Links(), upperLinks() and entryPoint() over the same
+    // rows, without rebuilding it. The links are validated so a corrupt graph cannot make a search fail.
+    public HNSWIndex(Dataset data, PrimitiveDistanceMetric metric, int m, int efConstruction, int efSearch,
+                     int[] levels, int[] links0, int[] upperLinks, int entryPoint) {
+        if (m < 2) {
+            throw new IllegalArgumentException("M must be at least 2");
+        }
+        if (efConstruction <= 0 || efSearch <= 0) {
+            throw new IllegalArgumentException("ef values must be greater than 0");
+        }
+        long restoreStart = System.nanoTime();
+        int numRows = data.numRows();
+        this.metric = metric;
+        this.numFeatures = data.numFeatures();
+        this.points = data.rowMajor();
+        this.m = m;
+        this.maxM0 = 2 * m;
+        this.efConstruction = Math.max(efConstruction, m);
+        this.efSearch = efSearch;
+        if (levels.length != numRows || links0.length != (long) numRows * (maxM0 + 1)) {
+            throw new IllegalArgumentException("HNSW graph does not match " + numRows + " rows and M = " + m);
+        }
+        this.levels = levels;
+        this.links0 = links0;
+        this.upperLinks = new int[numRows][];
+        this.searchStates = ThreadLocal.withInitial(() -> new SearchState(numRows));
+
+        int position = 0;
+        for (int node = 0; node < numRows; node++) {
+            if (levels[node] < 0 || levels[node] > MAX_LEVEL) {
+                throw new IllegalArgumentException("Invalid HNSW level of node " + node);
+            }
+            if (levels[node] > 0) {
+                int length = levels[node] * (m + 1);
+                if (position + length > upperLinks.length) {
+                    throw new IllegalArgumentException("HNSW upper layer links are truncated");
+                }
+                this.upperLinks[node] = Arrays.copyOfRange(upperLinks, position, position + length);
+                position += length;
+            }
+            maxLevel = Math.max(maxLevel, levels[node]);
+        }
+        if (position != upperLinks.length) {
+            throw new IllegalArgumentException("HNSW upper layer links have trailing values");
+        }
+        // Every link must lead to a node present on its layer, and the search must start on the top layer
+        for (int node = 0; node < numRows; node++) {
+            for (int layer = 0; layer <= levels[node]; layer++) {
+                int[] links = links(node, layer);
+                int base = linkBase(node, layer);
+                if (links[base] < 0 || links[base] > (layer == 0 ? maxM0 : m)) {
+                    throw new IllegalArgumentException("Invalid HNSW link count of node " + node);
+                }
+                for (int i = 1; i <= links[base]; i++) {
+                    int target = links[base + i];
+                    if (target < 0 || target >= numRows || levels[target] < layer) {
+                        throw new IllegalArgumentException("Invalid HNSW link of node " + node);
+                    }
+                }
+            }
+        }
+        if (numRows > 0 && (entryPoint < 0 || entryPoint >= numRows || levels[entryPoint] != maxLevel)) {
+            throw new IllegalArgumentException("Invalid HNSW entry point " + entryPoint);
+        }
+        this.entryPoint = numRows > 0 ? entryPoint : -1;
+        this.stats = new IndexStats(System.nanoTime() - restoreStart, numRows, maxLevel + 1);
+    }
+
+    private void insert(int node, SearchState state) {
+        int level = levels[node];
+        if (entryPoint < 0) {
+            entryPoint = node;
+            maxLevel = level;
+            return;
+        }
+
+        int offset = node * numFeatures;
+        int entry = entryPoint;
+        double entryDistance = metric.reducedDistance(points, offset, points, entry * numFeatures, numFeatures);
+        for (int layer = maxLevel; layer > level; layer--) {
+            entry = greedyClosest(points, offset, entry, entryDistance, layer, state);
+            entryDistance = state.greedyDistance;
+        }
+
+        for (int layer = Math.min(level, maxLevel); layer >= 0; layer--) {
+            NeighborHeap found = searchLayer(points, offset, entry, entryDistance, efConstruction, layer, state);
+            Neighbors candidates = found.toNeighbors();
+            int[] selected = selectNeighbors(candidates.indices(), candidates.distances(), candidates.size(), m);
+
+            int[] links = links(node, layer);
+            int base = linkBase(node, layer);
+            links[base] = selected.length;
+            System.arraycopy(selected, 0, links, base + 1, selected.length);
+            for (int neighbor : selected) {
+                addLink(neighbor, node, layer);
+            }
+            entry = candidates.index(0);
+            entryDistance = candidates.distance(0);
+        }
+
+        if (level > maxLevel) {
+            entryPoint = node;
+            maxLevel = level;
+        }
+    }
+
+    // Links target from node, pruning node's list back to its maximum with the selection heuristic when full
+    private void addLink(int node, int target, int layer) {
+        int[] links = links(node, layer);
+        int base = linkBase(node, layer);
+        int count = links[base];
+        int maxLinks = layer == 0 ? maxM0 : m;
+        if (count < maxLinks) {
+            links[base + 1 + count] = target;
+            links[base] = count + 1;
+            return;
+        }
+
+        int offset = node * numFeatures;
+        int[] candidates = new int[count + 1];
+        double[] distances = new double[count + 1];
+        System.arraycopy(links, base + 1, candidates, 0, count);
+        candidates[count] = target;
+        for (int i = 0; i <= count; i++) {
+            distances[i] = metric.reducedDistance(points, offset, points, candidates[i] * numFeatures, numFeatures);
+        }
+        sortByDistance(candidates, distances);
+        int[] selected = selectNeighbors(candidates, distances, candidates.length, maxLinks);
+        links[base] = selected.length;
+        System.arraycopy(selected, 0, links, base + 1, selected.length);
+    }
+
+    // Keeps a candidate only if it is closer to the base node than to every candidate kept so far,
+    // which spreads the links in different directions. Candidates must be sorted by distance.
+    private int[] selectNeighbors(int[] candidates, double[] distances, int count, int maxLinks) {
+        int[] selected = new int[Math.min(count, maxLinks)];
+        int numSelected = 0;
+        for (int i = 0; i < count && numSelected < selected.length; i++) {
+            int candidate = candidates[i];
+            int offset = candidate * numFeatures;
+            boolean keep = true;
+            for (int j = 0; j < numSelected && keep; j++) {
+                double distance = metric.reducedDistance(points, offset, points, selected[j] * numFeatures,
+                        numFeatures, distances[i]);
+                keep = distance >= distances[i];
+            }
+            if (keep) {
+                selected[numSelected++] = candidate;
+            }
+        }
+        return Arrays.copyOf(selected, numSelected);
+    }
+
+    @Override
+    public void search(double[] query, int offset, NeighborHeap heap) {
+        long begin = System.nanoTime();
+        SearchState state = searchStates.get();
+        state.computations = 0;
+        heap.clear();
+        if (entryPoint < 0) {
+            return;
+        }
+
+        int entry = entryPoint;
+        double entryDistance = metric.reducedDistance(query, offset, points, entry * numFeatures, numFeatures);
+        state.computations++;
+        for (int layer = maxLevel; layer > 0; layer--) {
+            entry = greedyClosest(query, offset, entry, entryDistance, layer, state);
+            entryDistance = state.greedyDistance;
+        }
+
+        NeighborHeap found = searchLayer(query, offset, entry, entryDistance,
+                Math.max(efSearch, heap.capacity()), 0, state);
+        for (int i = 0; i < found.size(); i++) {
+            heap.offer(found.index(i), found.distance(i));
+        }
+        stats.recordQuery(state.computations, System.nanoTime() - begin);
+    }
+
+    // Follows the closest link on one layer until no link gets closer to the query
+    private int greedyClosest(double[] query, int offset, int entry, double entryDistance, int layer, SearchState state) {
+        int current = entry;
+        double currentDistance = entryDistance;
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            int[] links = links(current, layer);
+            int base = linkBase(current, layer);
+            for (int i = 1; i <= links[base]; i++) {
+                int neighbor = links[base + i];
+                double distance = metric.reducedDistance(query, offset, points, neighbor * numFeatures,
+                        numFeatures, currentDistance);
+                state.computations++;
+                if (distance < currentDistance || (distance == currentDistance && neighbor < current)) {
+                    current = neighbor;
+                    currentDistance = distance;
+                    improved = true;
+                }
+            }
+        }
+        state.greedyDistance = currentDistance;
+        return current;
+    }
+
+    // Best-first search of one layer, returns the ef closest nodes found in the state's result heap
+    private NeighborHeap searchLayer(double[] query, int offset, int entry, double entryDistance, int ef,
+                                     int layer, SearchState state) {
+        NeighborHeap results = state.results(ef);
+        CandidateQueue candidates = state.candidates;
+        state.nextVisit();
+        results.clear();
+        candidates.clear();
+        state.visit(entry);
+        results.offer(entry, entryDistance);
+        candidates.push(entry, entryDistance);
+
+        while (candidates.size() > 0) {
+            if (candidates.peekDistance() > results.bound()) {
+                break;
+            }
+            int current = candidates.pop();
+            int[] links = links(current, layer);
+            int base = linkBase(current, layer);
+            for (int i = 1; i <= links[base]; i++) {
+                int neighbor = links[base + i];
+                if (!state.visit(neighbor)) {
+                    continue;
+                }
+                double bound = results.bound();
+                double distance = metric.reducedDistance(query, offset, points, neighbor * numFeatures,
+                        numFeatures, bound);
+                state.computations++;
+                if (distance <= bound && results.offer(neighbor, distance)) {
+                    candidates.push(neighbor, distance);
+                }
+            }
+        }
+        return results;
+    }
+
+    private int[] links(int node, int layer) {
+        return layer == 0 ? links0 : upperLinks[node];
+    }
+
+    private int linkBase(int node, int layer) {
+        return layer == 0 ? node * (maxM0 + 1) : (layer - 1) * (m + 1);
+    }
+
+    private static void sortByDistance(int[] indices, double[] distances) {
+        for (int i = 1; i < indices.length; i++) {
+            int index = indices[i];
+            double distance = distances[i];
+            int j = i - 1;
+            while (j >= 0 && (distances[j] > distance || (distances[j] == distance && indices[j] > index))) {
+                indices[j + 1] = indices[j];
+                distances[j + 1] = distances[j];
+                j--;
+            }
+            indices[j + 1] = index;
+            distances[j + 1] = distance;
+        }
+    }
+
+    // Layer of each node, shared rather than copied
+    public int[] levels() {
+        return levels;
+    }
+
+    // Layer 0 links, 2 * M + 1 slots per node holding the link count then the links, shared rather than copied
+    public int[] layer0Links() {
+        return links0;
+    }
+
+    // Links of layers 1..level, M + 1 slots per layer, concatenated over the nodes in order
+    public int[] upperLinks() {
+        int length = 0;
+        for (int level : levels) {
+            length += level * (m + 1);
+        }
+        int[] flat = new int[length];
+        int position = 0;
+        for (int node = 0; node < levels.length; node++) {
+            if (levels[node] > 0) {
+                System.arraycopy(upperLinks[node], 0, flat, position, upperLinks[node].length);
+                position += upperLinks[node].length;
+            }
+        }
+        return flat;
+    }
+
+    // Node every search starts from, -1 for an empty graph
+    public int entryPoint() {
+        return entryPoint;
+    }
+
+    @Override
+    public IndexStats stats() {
+        return stats;
+    }
+
+    private static class SearchState {
+        // A node is visited in the current search when its mark equals visitMark
+        final int[] marks;
+        final CandidateQueue candidates = new CandidateQueue();
+        NeighborHeap results;
+        int visitMark;
+        double greedyDistance;
+        long computations;
+
+        SearchState(int numRows) {
+            this.marks = new int[numRows];
+        }
+
+        NeighborHeap results(int ef) {
+            if (results == null || results.capacity() != ef) {
+                results = new NeighborHeap(ef);
+            }
+            return results;
+        }
+
+        void nextVisit() {
+            if (++visitMark == Integer.MAX_VALUE) {
+                Arrays.fill(marks, 0);
+                visitMark = 1;
+            }
+        }
+
+        // Returns false if the node was already visited
+        boolean visit(int node) {
+            if (marks[node] == visitMark) {
+                return false;
+            }
+            marks[node] = visitMark;
+            return true;
+        }
+    }
+
+    // Growable min-heap of (distance, node) candidates still to expand
+    private static class CandidateQueue {
+        private double[] distances = new double[64];
+        private int[] nodes = new int[64];
+        private int size;
+
+        void clear() {
+            size = 0;
+        }
+
+        int size() {
+            return size;
+        }
+
+        double peekDistance() {
+            return distances[0];
+        }
+
+        void push(int node, double distance) {
+            if (size == nodes.length) {
+                nodes = Arrays.copyOf(nodes, size * 2);
+                distances = Arrays.copyOf(distances, size * 2);
+            }
+            int position = size++;
+            while (position > 0) {
+                int parent = (position - 1) >>> 1;
+                if (distances[parent] <= distance) {
+                    break;
+                }
+                nodes[position] = nodes[parent];
+                distances[position] = distances[parent];
+                position = parent;
+            }
+            nodes[position] = node;
+            distances[position] = distance;
+        }
+
+        int pop() {
+            int top = nodes[0];
+            int node = nodes[--size];
+            double distance = distances[size];
+            int position = 0;
+            int half = size >>> 1;
+            while (position < half) {
+                int child = 2 * position + 1;
+                if (child + 1 < size && distances[child + 1] < distances[child]) {
+                    child++;
+                }
+                if (distances[child] >= distance) {
+                    break;
+                }
+                nodes[position] = nodes[child];
+                distances[position] = distances[child];
+                position = child;
+            }
+            nodes[position] = node;
+            distances[position] = distance;
+            return top;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package Models.neighbors;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// Build-time figures of a NeighborIndex plus query counters updated as it is searched
+public class IndexStats {
+    private final long buildTimeNanos;
+    private final int numNodes;
+    private final int depth;
+    private final LongAdder queries = new LongAdder();
+    private final LongAdder distanceComputations = new LongAdder();
+    private final LongAdder queryTimeNanos = new LongAdder();
+
+    public IndexStats(long buildTimeNanos, int numNodes, int depth) {
+        this.buildTimeNanos = buildTimeNanos;
+        this.numNodes = numNodes;
+        this.depth = depth;
+    }
+
+    // Called once per query so the shared counters are touched only once per search
+    public void recordQuery(long computations, long elapsedNanos) {
+        queries.increment();
+        distanceComputations.add(computations);
+        queryTimeNanos.add(elapsedNanos);
+    }
+
+    public long buildTimeNanos() {
+        return buildTimeNanos;
+    }
+
+    public int numNodes() {
+        return numNodes;
+    }
+
+    public int depth() {
+        return depth;
+    }
+
+    public long queries() {
+        return queries.sum();
+    }
+
+    public long distanceComputations() {
+        return distanceComputations.sum();
+    }
+
+    public long queryTimeNanos() {
+        return queryTimeNanos.sum();
+    }
+
+    public double averageDistanceComputations() {
+        long count = queries.sum();
+        return count == 0 ? 0.0 : (double) distanceComputations.sum() / count;
+    }
+
+    public double averageQueryTimeNanos() {
+        long count = queries.sum();
+        return count == 0 ? 0.0 : (double) queryTimeNanos.sum() / count;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("build %.2f ms, %d nodes, depth %d, %d queries, %.1f distances/query, %.1f us/query",
+                buildTimeNanos / 1e6, numNodes, depth, queries(), averageDistanceComputations(),
+                averageQueryTimeNanos() / 1e3);
+    }
+}
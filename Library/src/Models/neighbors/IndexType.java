@@ -0,0 +1,37 @@
+package Models.neighbors;
+
+import DataProcessing.domain.Dataset;
+import utils.PrimitiveDistanceMetric;
+
+public enum IndexType {
+    // Linear scan over all rows, works with every metric
+    BRUTE_FORCE {
+        @Override
+        public NeighborIndex build(Dataset data, PrimitiveDistanceMetric metric) {
+            return new BruteForceIndex(data, metric);
+        }
+    },
+    // Axis-aligned splits, prunes with the metric's per-axis lower bounds; best for few dimensions
+    KD_TREE {
+        @Override
+        public NeighborIndex build(Dataset data, PrimitiveDistanceMetric metric) {
+            return new KDTreeIndex(data, metric);
+        }
+    },
+    // Nested bounding balls, prunes with the triangle inequality
+    BALL_TREE {
+        @Override
+        public NeighborIndex build(Dataset data, PrimitiveDistanceMetric metric) {
+            return new BallTreeIndex(data, metric);
+        }
+    },
+    // Approximate: navigable small world graph, for many dimensions where the trees stop pruning
+    HNSW {
+        @Override
+        public NeighborIndex build(Dataset data, PrimitiveDistanceMetric metric) {
+            return new HNSWIndex(data, metric);
+        }
+    };
+
+    public abstract NeighborIndex build(Dataset data, PrimitiveDistanceMetric metric);
+}
@@ -0,0 +1,146 @@
+package Models.neighbors;
+
+import DataProcessing.domain.Dataset;
+import utils.PrimitiveDistanceMetric;
+
+import java.util.Arrays;
+
+// KD-tree stored as parallel node arrays. Each node splits its rows at the median of the axis
+// with the widest spread; leaves hold up to LEAF_SIZE rows that are copied next to each other.
+// A subtree is skipped when the sum of the metric's per-axis bounds to its cell already exceeds
+// the current k-th distance, so the search stays exact for any metric with a valid axisDistance.
+public class KDTreeIndex implements NeighborIndex {
+    private static final int LEAF_SIZE = 16;
+
+    private final PrimitiveDistanceMetric metric;
+    private final int numFeatures;
+    private final double[] points;
+    private final int[] rowIds;
+    private final ThreadLocal<SearchState> searchStates;
+    private final IndexStats stats;
+
+    private int[] splitAxis;
+    private double[] splitValue;
+    private int[] left;
+    private int[] right;
+    private int[] start;
+    private int[] end;
+    private int numNodes;
+    private int depth;
+
+    public KDTreeIndex(Dataset data, PrimitiveDistanceMetric metric) {
+        long buildStart = System.nanoTime();
+        this.metric = metric;
+        this.numFeatures = data.numFeatures();
+
+        int capacity = 2 * (data.numRows() / LEAF_SIZE + 1);
+        splitAxis = new int[capacity];
+        splitValue = new double[capacity];
+        left = new int[capacity];
+        right = new int[capacity];
+        start = new int[capacity];
+        end = new int[capacity];
+
+        int[] rows = RowSelect.identity(data.numRows());
+        build(rows, 0, rows.length, data.rowMajor(), 1);
+        this.points = RowSelect.gather(rows, data.rowMajor(), numFeatures);
+        this.rowIds = rows;
+        this.searchStates = ThreadLocal.withInitial(() -> new SearchState(numFeatures));
+        this.stats = new IndexStats(System.nanoTime() - buildStart, numNodes, depth);
+    }
+
+    private int build(int[] rows, int from, int to, double[] features, int level) {
+        int node = newNode(from, to);
+        depth = Math.max(depth, level);
+        if (to - from <= LEAF_SIZE) {
+            return node;
+        }
+        int axis = RowSelect.widestAxis(rows, from, to, features, numFeatures);
+        if (axis < 0) {
+            return node;
+        }
+
+        int mid = (from + to) >>> 1;
+        RowSelect.select(rows, from, to, mid, features, numFeatures, axis);
+        splitAxis[node] = axis;
+        splitValue[node] = features[rows[mid] * numFeatures + axis];
+        int leftChild = build(rows, from, mid, features, level + 1);
+        int rightChild = build(rows, mid, to, features, level + 1);
+        left[node] = leftChild;
+        right[node] = rightChild;
+        return node;
+    }
+
+    private int newNode(int from, int to) {
+        if (numNodes == splitAxis.length) {
+            int capacity = numNodes * 2;
+            splitAxis = Arrays.copyOf(splitAxis, capacity);
+            splitValue = Arrays.copyOf(splitValue, capacity);
+            left = Arrays.copyOf(left, capacity);
+            right = Arrays.copyOf(right, capacity);
+            start = Arrays.copyOf(start, capacity);
+            end = Arrays.copyOf(end, capacity);
+        }
+        int node = numNodes++;
+        splitAxis[node] = -1;
+        start[node] = from;
+        end[node] = to;
+        return node;
+    }
+
+    @Override
+    public void search(double[] query, int offset, NeighborHeap heap) {
+        long begin = System.nanoTime();
+        SearchState state = searchStates.get();
+        Arrays.fill(state.axisOffsets, 0.0);
+        state.computations = 0;
+
+        heap.clear();
+        search(0, query, offset, heap, 0.0, state);
+        stats.recordQuery(state.computations, System.nanoTime() - begin);
+    }
+
+    // cellDistance is the lower bound on the reduced distance from the query to this node's cell
+    private void search(int node, double[] query, int offset, NeighborHeap heap, double cellDistance, SearchState state) {
+        int axis = splitAxis[node];
+        if (axis < 0) {
+            for (int p = start[node]; p < end[node]; p++) {
+                double bound = heap.bound();
+                double distance = metric.reducedDistance(query, offset, points, p * numFeatures, numFeatures, bound);
+                if (distance <= bound) {
+                    heap.offer(rowIds[p], distance);
+                }
+            }
+            state.computations += end[node] - start[node];
+            return;
+        }
+
+        double delta = query[offset + axis] - splitValue[node];
+        int near = delta < 0 ? left[node] : right[node];
+        int far = delta < 0 ? right[node] : left[node];
+        search(near, query, offset, heap, cellDistance, state);
+
+        // Moving to the far side only changes this axis' contribution to the cell bound
+        double previous = state.axisOffsets[axis];
+        double farDistance = cellDistance - metric.axisDistance(axis, previous) + metric.axisDistance(axis, delta);
+        if (farDistance <= heap.bound()) {
+            state.axisOffsets[axis] = delta;
+            search(far, query, offset, heap, farDistance, state);
+            state.axisOffsets[axis] = previous;
+        }
+    }
+
+    @Override
+    public IndexStats stats() {
+        return stats;
+    }
+
+    private static class SearchState {
+        final double[] axisOffsets;
+        long computations;
+
+        SearchState(int numFeatures) {
+            this.axisOffsets = new double[numFeatures];
+        }
+    }
+}
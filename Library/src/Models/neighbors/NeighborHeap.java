@@ -0,0 +1,122 @@
+package Models.neighbors;
+
+// Fixed-capacity max-heap of (distance, index) pairs kept in parallel primitive arrays.
+// It holds the k closest candidates seen so far with the farthest one at the root, so
+// each offer is O(log k) and nothing is allocated after construction.
+// Ties on distance are broken by the smaller index, matching a stable sort of the candidates.
+public class NeighborHeap {
+    private final double[] distances;
+    private final int[] indices;
+    private int size;
+
+    public NeighborHeap(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be greater than 0");
+        }
+        this.distances = new double[capacity];
+        this.indices = new int[capacity];
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return distances.length;
+    }
+
+    public boolean isFull() {
+        return size == distances.length;
+    }
+
+    // Distance a candidate has to beat to get in: the farthest kept distance once full, otherwise infinity
+    public double bound() {
+        return size == distances.length ? distances[0] : Double.POSITIVE_INFINITY;
+    }
+
+    // Returns true if the candidate was kept
+    public boolean offer(int index, double distance) {
+        if (size < distances.length) {
+            siftUp(size++, index, distance);
+            return true;
+        }
+        if (!isCloser(distance, index, distances[0], indices[0])) {
+            return false;
+        }
+        siftDown(0, index, distance);
+        return true;
+    }
+
+    // Entries in heap order, use toNeighbors() for them sorted by distance
+    public int index(int position) {
+        return indices[position];
+    }
+
+    public double distance(int position) {
+        return distances[position];
+    }
+
+    // Copies the kept entries sorted from closest to farthest; the heap itself is left unchanged
+    public Neighbors toNeighbors() {
+        int[] sortedIndices = new int[size];
+        double[] sortedDistances = new double[size];
+        System.arraycopy(indices, 0, sortedIndices, 0, size);
+        System.arraycopy(distances, 0, sortedDistances, 0, size);
+
+        // Insertion sort, k is small
+        for (int i = 1; i < size; i++) {
+            double distance = sortedDistances[i];
+            int index = sortedIndices[i];
+            int j = i - 1;
+            while (j >= 0 && isCloser(distance, index, sortedDistances[j], sortedIndices[j])) {
+                sortedDistances[j + 1] = sortedDistances[j];
+                sortedIndices[j + 1] = sortedIndices[j];
+                j--;
+            }
+            sortedDistances[j + 1] = distance;
+            sortedIndices[j + 1] = index;
+        }
+        return new Neighbors(sortedIndices, sortedDistances);
+    }
+
+    private void siftUp(int position, int index, double distance) {
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (!isCloser(distances[parent], indices[parent], distance, index)) {
+                break;
+            }
+            distances[position] = distances[parent];
+            indices[position] = indices[parent];
+            position = parent;
+        }
+        distances[position] = distance;
+        indices[position] = index;
+    }
+
+    private void siftDown(int position, int index, double distance) {
+        int half = size >>> 1;
+        while (position < half) {
+            int child = 2 * position + 1;
+            int right = child + 1;
+            if (right < size && isCloser(distances[child], indices[child], distances[right], indices[right])) {
+                child = right;
+            }
+            if (!isCloser(distance, index, distances[child], indices[child])) {
+                break;
+            }
+            distances[position] = distances[child];
+            indices[position] = indices[child];
+            position = child;
+        }
+        distances[position] = distance;
+        indices[position] = index;
+    }
+
+    private static boolean isCloser(double distance, int index, double otherDistance, int otherIndex) {
+        return distance < otherDistance || (distance == otherDistance && index < otherIndex);
+    }
+}
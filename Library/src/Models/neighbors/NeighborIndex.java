@@ -0,0 +1,18 @@
+package Models.neighbors;
+
+// Search structure over the training rows of a KNNClassifier.
+// Distances stored in the heap are the metric's reduced distances.
+public interface NeighborIndex {
+    // Clears the heap and fills it with the rows closest to query[offset..offset + numFeatures)
+    void search(double[] query, int offset, NeighborHeap heap);
+
+    // Searches count consecutive queries stored row-major from queries[offset], one heap per query.
+    // Indexes that can share work between neighbouring queries override this.
+    default void searchBlock(double[] queries, int offset, int numFeatures, int count, NeighborHeap[] heaps) {
+        for (int q = 0; q < count; q++) {
+            search(queries, offset + q * numFeatures, heaps[q]);
+        }
+    }
+
+    IndexStats stats();
+}
@@ -0,0 +1,35 @@
+package Models.neighbors;
+
+// Result of a nearest-neighbour query: training row indices and their distances, closest first
+public class Neighbors {
+    private final int[] indices;
+    private final double[] distances;
+
+    public Neighbors(int[] indices, double[] distances) {
+        if (indices.length != distances.length) {
+            throw new IllegalArgumentException("Indices and distances must have the same length");
+        }
+        this.indices = indices;
+        this.distances = distances;
+    }
+
+    public int size() {
+        return indices.length;
+    }
+
+    public int index(int i) {
+        return indices[i];
+    }
+
+    public double distance(int i) {
+        return distances[i];
+    }
+
+    public int[] indices() {
+        return indices.clone();
+    }
+
+    public double[] distances() {
+        return distances.clone();
+    }
+}
@@ -0,0 +1,26 @@
+package Models.neighbors;
+
+// Compact storage formats for training rows, see QuantizedIndex
+public enum Quantization {
+    // Rounds every value to the nearest float
+    FLOAT32(4),
+    // Per-feature linear scale over the feature's [min, max], 65536 levels
+    INT16(2),
+    // Per-feature linear scale over the feature's [min, max], 256 levels
+    INT8(1);
+
+    private final int bytesPerValue;
+
+    Quantization(int bytesPerValue) {
+        this.bytesPerValue = bytesPerValue;
+    }
+
+    public int bytesPerValue() {
+        return bytesPerValue;
+    }
+
+    // Highest code of the integer formats; codes run from 0 to maxCode
+    int maxCode() {
+        return (1 << (8 * bytesPerValue)) - 1;
+    }
+}
@@ -0,0 +1,363 @@
+package Models.neighbors;
+
+import DataProcessing.domain.Dataset;
+import utils.EuclideanDistance;
+import utils.ManhattanDistance;
+import utils.PrimitiveDistanceMetric;
+
+import java.util.Arrays;
+
+// Brute-force index over training rows stored as float32 or as per-feature scaled int16/int8 codes,
+// a half to an eighth of the memory of the double rows.
+//
+// For Euclidean and Manhattan distance the rows are scored on the codes themselves: the query is moved
+// into code space once per search, target[j] = (q[j] - min[j]) / scale[j], and the distance becomes
+// sum scale[j]^2 * (target[j] - code)^2 or sum scale[j] * |target[j] - code|. Features with a single
+// value add a constant per query. Any other metric gets each row decoded into a per-thread buffer
+// and compared with its early-abandoning distance.
+//
+// With rerank > 0 the rerank closest rows by quantized distance are re-scored against the original
+// double rows, which are then kept by the index; without it the index holds no reference to them.
+public class QuantizedIndex implements NeighborIndex {
+    // Rows of codes scored per tile by searchBlock, sized so a tile stays in the L1/L2 cache
+    private static final int TILE_BYTES = 1 << 15;
+
+    private final PrimitiveDistanceMetric metric;
+    private final Quantization quantization;
+    private final int numRows;
+    private final int numFeatures;
+    private final int rerank;
+    // Original rows for re-ranking, null when rerank is 0
+    private final Dataset exact;
+    // Only the array of the chosen format is set, rows are stored row-major
+    private final float[] floats;
+    private final short[] shorts;
+    private final byte[] bytes;
+    // Value of feature j is minValues[j] + code * scales[j]
+    private final double[] minValues;
+    private final double[] scales;
+    // True when distances are computed on the codes, squared for Euclidean and absolute for Manhattan
+    private final boolean codeScan;
+    private final boolean squared;
+    // Per-feature factor of a code-space term: scale^2 or scale, 1 for float32, 0 for single-valued features
+    private final double[] termWeights;
+    private final ThreadLocal<SearchState> searchStates;
+    private final IndexStats stats;
+
+    public QuantizedIndex(Dataset data, PrimitiveDistanceMetric metric, Quantization quantization, int rerank) {
+        if (rerank < 0) {
+            throw new IllegalArgumentException("Re-rank candidates cannot be negative");
+        }
+        long start = System.nanoTime();
+        this.metric = metric;
+        this.quantization = quantization;
+        this.numRows = data.numRows();
+        this.numFeatures = data.numFeatures();
+        this.rerank = rerank;
+        this.exact = rerank > 0 ? data : null;
+        this.minValues = new double[numFeatures];
+        this.scales = new double[numFeatures];
+        // Exact classes only, a subclass may change the distance
+        this.codeScan = metric.getClass() == EuclideanDistance.class || metric.getClass() == ManhattanDistance.class;
+        this.squared = metric.getClass() == EuclideanDistance.class;
+        this.termWeights = new double[numFeatures];
+        this.searchStates = ThreadLocal.withInitial(() -> new SearchState(numFeatures));
+
+        double[] features = data.rowMajor();
+        int length = numRows * numFeatures;
+        this.floats = quantization == Quantization.FLOAT32 ? new float[length] : null;
+        this.shorts = quantization == Quantization.INT16 ? new short[length] : null;
+        this.bytes = quantization == Quantization.INT8 ? new byte[length] : null;
+
+        if (quantization == Quantization.FLOAT32) {
+            for (int i = 0; i < length; i++) {
+                floats[i] = (float) features[i];
+            }
+        } else {
+            fitScales(features);
+            encode(features);
+        }
+        for (int j = 0; j < numFeatures; j++) {
+            double scale = quantization == Quantization.FLOAT32 ? 1.0 : scales[j];
+            termWeights[j] = squared ? scale * scale : scale;
+        }
+        this.stats = new IndexStats(System.nanoTime() - start, 1, 0);
+    }
+
+    private void fitScales(double[] features) {
+        double[] maxValues = new double[numFeatures];
+        Arrays.fill(minValues, Double.POSITIVE_INFINITY);
+        Arrays.fill(maxValues, Double.NEGATIVE_INFINITY);
+        for (int i = 0; i < numRows; i++) {
+            for (int j = 0; j < numFeatures; j++) {
+                double value = features[i * numFeatures + j];
+                minValues[j] = Math.min(minValues[j], value);
+                maxValues[j] = Math.max(maxValues[j], value);
+            }
+        }
+        for (int j = 0; j < numFeatures; j++) {
+            if (!Double.isFinite(minValues[j]) || !Double.isFinite(maxValues[j])) {
+                throw new IllegalArgumentException("Feature " + j + " has values that cannot be quantized");
+            }
+            scales[j] = (maxValues[j] - minValues[j]) / quantization.maxCode();
+        }
+    }
+
+    // Codes are stored offset so the full unsigned range fits the signed Java types
+    private void encode(double[] features) {
+        int maxCode = quantization.maxCode();
+        int half = (maxCode + 1) / 2;
+        for (int i = 0; i < numRows; i++) {
+            for (int j = 0; j < numFeatures; j++) {
+                int p = i * numFeatures + j;
+                int code = scales[j] == 0.0 ? 0
+                        : (int) Math.max(0, Math.min(maxCode, Math.round((features[p] - minValues[j]) / scales[j])));
+                if (quantization == Quantization.INT16) {
+                    shorts[p] = (short) (code - half);
+                } else {
+                    bytes[p] = (byte) (code - half);
+                }
+            }
+        }
+    }
+
+    private void decode(int row, double[] out) {
+        int p = row * numFeatures;
+        switch (quantization) {
+            case FLOAT32:
+                for (int j = 0; j < numFeatures; j++) {
+                    out[j] = floats[p + j];
+                }
+                break;
+            case INT16:
+                for (int j = 0; j < numFeatures; j++) {
+                    out[j] = minValues[j] + (shorts[p + j] + 32768) * scales[j];
+                }
+                break;
+            default:
+                for (int j = 0; j < numFeatures; j++) {
+                    out[j] = minValues[j] + (bytes[p + j] + 128) * scales[j];
+                }
+                break;
+        }
+    }
+
+    // Writes query[offset..] in code space to target[t..] and returns the constant distance added by the
+    // features whose scale is 0 (every row holds their minimum). Codes are stored minus half the range.
+    private double toCodeSpace(double[] query, int offset, double[] target, int t) {
+        if (quantization == Quantization.FLOAT32) {
+            System.arraycopy(query, offset, target, t, numFeatures);
+            return 0.0;
+        }
+        double half = (quantization.maxCode() + 1) / 2;
+        double constant = 0.0;
+        for (int j = 0; j < numFeatures; j++) {
+            double delta = query[offset + j] - minValues[j];
+            if (scales[j] == 0.0) {
+                target[t + j] = 0.0;
+                constant += squared ? delta * delta : Math.abs(delta);
+            } else {
+                target[t + j] = delta / scales[j] - half;
+            }
+        }
+        return constant;
+    }
+
+    // Copies the stored codes of a row into out, widened but not decoded
+    private void widen(int row, double[] out) {
+        int p = row * numFeatures;
+        switch (quantization) {
+            case FLOAT32:
+                for (int j = 0; j < numFeatures; j++) {
+                    out[j] = floats[p + j];
+                }
+                break;
+            case INT16:
+                for (int j = 0; j < numFeatures; j++) {
+                    out[j] = shorts[p + j];
+                }
+                break;
+            default:
+                for (int j = 0; j < numFeatures; j++) {
+                    out[j] = bytes[p + j];
+                }
+                break;
+        }
+    }
+
+    // Distance from the code-space query target[t..] to the widened codes of a row, abandoned once it
+    // passes bound. The bound is checked once per block of four features, as the metrics do.
+    private double codeDistance(double[] codes, double[] target, int t, double constant, double bound) {
+        double[] w = termWeights;
+        double sum = constant;
+        int j = 0;
+        if (squared) {
+            for (; j + 4 <= numFeatures; j += 4) {
+                double d0 = target[t + j] - codes[j];
+                double d1 = target[t + j + 1] - codes[j + 1];
+                double d2 = target[t + j + 2] - codes[j + 2];
+                double d3 = target[t + j + 3] - codes[j + 3];
+                sum += w[j] * d0 * d0 + w[j + 1] * d1 * d1 + w[j + 2] * d2 * d2 + w[j + 3] * d3 * d3;
+                if (sum > bound) {
+                    return sum;
+                }
+            }
+            for (; j < numFeatures; j++) {
+                double diff = target[t + j] - codes[j];
+                sum += w[j] * diff * diff;
+            }
+        } else {
+            for (; j + 4 <= numFeatures; j += 4) {
+                sum += w[j] * Math.abs(target[t + j] - codes[j])
+                        + w[j + 1] * Math.abs(target[t + j + 1] - codes[j + 1])
+                        + w[j + 2] * Math.abs(target[t + j + 2] - codes[j + 2])
+                        + w[j + 3] * Math.abs(target[t + j + 3] - codes[j + 3]);
+                if (sum > bound) {
+                    return sum;
+                }
+            }
+            for (; j < numFeatures; j++) {
+                sum += w[j] * Math.abs(target[t + j] - codes[j]);
+            }
+        }
+        return sum;
+    }
+
+    @Override
+    public void search(double[] query, int offset, NeighborHeap heap) {
+        long begin = System.nanoTime();
+        SearchState state = searchStates.get();
+        NeighborHeap candidates = rerank > 0 ? state.candidate(0, Math.max(rerank, heap.capacity())) : heap;
+
+        candidates.clear();
+        if (codeScan) {
+            double[] target = state.targets(1);
+            double constant = toCodeSpace(query, offset, target, 0);
+            scanCodes(target, 0, constant, candidates, 0, numRows, state.row);
+        } else {
+            double[] row = state.row;
+            for (int i = 0; i < numRows; i++) {
+                decode(i, row);
+                double bound = candidates.bound();
+                double distance = metric.reducedDistance(query, offset, row, 0, numFeatures, bound);
+                if (distance <= bound) {
+                    candidates.offer(i, distance);
+                }
+            }
+        }
+        if (rerank > 0) {
+            rerank(query, offset, candidates, heap);
+        }
+        stats.recordQuery(numRows + (rerank > 0 ? candidates.size() : 0), System.nanoTime() - begin);
+    }
+
+    // Moves every query of the block into code space once, then walks the stored rows in tiles and runs
+    // every query against a tile before moving on, so the codes are read from cache
+    @Override
+    public void searchBlock(double[] queries, int offset, int numFeatures, int count, NeighborHeap[] heaps) {
+        if (!codeScan) {
+            NeighborIndex.super.searchBlock(queries, offset, numFeatures, count, heaps);
+            return;
+        }
+
+        long begin = System.nanoTime();
+        SearchState state = searchStates.get();
+        double[] targets = state.targets(count);
+        double[] constants = state.constants;
+        for (int q = 0; q < count; q++) {
+            constants[q] = toCodeSpace(queries, offset + q * numFeatures, targets, q * numFeatures);
+            NeighborHeap shortlist = rerank > 0 ? state.candidate(q, Math.max(rerank, heaps[q].capacity())) : heaps[q];
+            shortlist.clear();
+        }
+        NeighborHeap[] candidates = rerank > 0 ? state.candidates : heaps;
+
+        int tileRows = Math.max(1, TILE_BYTES / (numFeatures * quantization.bytesPerValue()));
+        for (int tileStart = 0; tileStart < numRows; tileStart += tileRows) {
+            int tileEnd = Math.min(numRows, tileStart + tileRows);
+            for (int q = 0; q < count; q++) {
+                scanCodes(targets, q * numFeatures, constants[q], candidates[q], tileStart, tileEnd, state.row);
+            }
+        }
+
+        if (rerank > 0) {
+            for (int q = 0; q < count; q++) {
+                rerank(queries, offset + q * numFeatures, candidates[q], heaps[q]);
+            }
+        }
+        long elapsedPerQuery = (System.nanoTime() - begin) / Math.max(1, count);
+        for (int q = 0; q < count; q++) {
+            stats.recordQuery(numRows + (rerank > 0 ? candidates[q].size() : 0), elapsedPerQuery);
+        }
+    }
+
+    // Offers stored rows [from, to) to the heap, scored in code space
+    private void scanCodes(double[] target, int t, double constant, NeighborHeap heap, int from, int to,
+                           double[] codes) {
+        for (int i = from; i < to; i++) {
+            widen(i, codes);
+            double bound = heap.bound();
+            double distance = codeDistance(codes, target, t, constant, bound);
+            if (distance <= bound) {
+                heap.offer(i, distance);
+            }
+        }
+    }
+
+    // Re-scores the quantized shortlist in full precision
+    private void rerank(double[] query, int offset, NeighborHeap candidates, NeighborHeap heap) {
+        double[] features = exact.rowMajor();
+        heap.clear();
+        for (int c = 0; c < candidates.size(); c++) {
+            int index = candidates.index(c);
+            heap.offer(index, metric.reducedDistance(query, offset, features, exact.rowOffset(index), numFeatures));
+        }
+    }
+
+    public Quantization quantization() {
+        return quantization;
+    }
+
+    // Bytes used by the stored rows, excluding the original rows kept for re-ranking
+    public long storageBytes() {
+        return (long) numRows * numFeatures * quantization.bytesPerValue() + 16L * numFeatures;
+    }
+
+    @Override
+    public IndexStats stats() {
+        return stats;
+    }
+
+    private static class SearchState {
+        final int numFeatures;
+        // One stored row, decoded for other metrics or widened for a code-space scan
+        final double[] row;
+        // Code-space queries of the current block, row-major, and their constant terms
+        double[] targets = new double[0];
+        double[] constants = new double[0];
+        NeighborHeap[] candidates = new NeighborHeap[0];
+
+        SearchState(int numFeatures) {
+            this.numFeatures = numFeatures;
+            this.row = new double[numFeatures];
+        }
+
+        double[] targets(int count) {
+            if (constants.length < count) {
+                targets = new double[count * numFeatures];
+                constants = new double[count];
+            }
+            return targets;
+        }
+
+        // Re-rank shortlist of query q in the block, with the given capacity
+        NeighborHeap candidate(int q, int capacity) {
+            if (candidates.length <= q) {
+                candidates = Arrays.copyOf(candidates, q + 1);
+            }
+            if (candidates[q] == null || candidates[q].capacity() != capacity) {
+                candidates[q] = new NeighborHeap(capacity);
+            }
+            return candidates[q];
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package Models.neighbors;
+
+// Shared helpers for building the spatial indexes over a row permutation
+final class RowSelect {
+    private RowSelect() {
+    }
+
+    // Axis with the largest max - min spread over rows[from, to), or -1 if every row is identical
+    static int widestAxis(int[] rows, int from, int to, double[] features, int numFeatures) {
+        int bestAxis = -1;
+        double bestSpread = 0.0;
+        for (int axis = 0; axis < numFeatures; axis++) {
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            for (int i = from; i < to; i++) {
+                double value = features[rows[i] * numFeatures + axis];
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+            }
+            if (max - min > bestSpread) {
+                bestSpread = max - min;
+                bestAxis = axis;
+            }
+        }
+        return bestAxis;
+    }
+
+    // Reorders rows[from, to) so that rows[nth] holds the row whose value on axis is the nth smallest,
+    // with no larger values before it and no smaller values after it (quickselect)
+    static void select(int[] rows, int from, int to, int nth, double[] features, int numFeatures, int axis) {
+        int lo = from;
+        int hi = to - 1;
+        while (hi > lo) {
+            int mid = (lo + hi) >>> 1;
+            // Median of three as the pivot
+            if (value(rows, mid, features, numFeatures, axis) < value(rows, lo, features, numFeatures, axis)) swap(rows, lo, mid);
+            if (value(rows, hi, features, numFeatures, axis) < value(rows, lo, features, numFeatures, axis)) swap(rows, lo, hi);
+            if (value(rows, hi, features, numFeatures, axis) < value(rows, mid, features, numFeatures, axis)) swap(rows, mid, hi);
+            double pivot = value(rows, mid, features, numFeatures, axis);
+
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (value(rows, i, features, numFeatures, axis) < pivot) i++;
+                while (value(rows, j, features, numFeatures, axis) > pivot) j--;
+                if (i <= j) {
+                    swap(rows, i++, j--);
+                }
+            }
+            if (nth <= j) {
+                hi = j;
+            } else if (nth >= i) {
+                lo = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    // Copies the rows in permutation order so each node's points are contiguous
+    static double[] gather(int[] rows, double[] features, int numFeatures) {
+        double[] points = new double[rows.length * numFeatures];
+        for (int i = 0; i < rows.length; i++) {
+            System.arraycopy(features, rows[i] * numFeatures, points, i * numFeatures, numFeatures);
+        }
+        return points;
+    }
+
+    static int[] identity(int n) {
+        int[] rows = new int[n];
+        for (int i = 0; i < n; i++) {
+            rows[i] = i;
+        }
+        return rows;
+    }
+
+    private static double value(int[] rows, int position, double[] features, int numFeatures, int axis) {
+        return features[rows[position] * numFeatures + axis];
+    }
+
+    private static void swap(int[] rows, int i, int j) {
+        int tmp = rows[i];
+        rows[i] = rows[j];
+        rows[j] = tmp;
+    }
+}
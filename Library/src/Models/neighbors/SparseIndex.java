@@ -0,0 +1,143 @@
+package Models.neighbors;
+
+import DataProcessing.domain.SparseDataset;
+import utils.SparseDistanceMetric;
+
+import java.util.Arrays;
+
+// Exact neighbour search over sparse training rows through an inverted index: for every feature, the
+// training rows where it is non-zero and their values (the CSC transpose of the CSR data). A query
+// adds its contribution to the dot product of just the rows sharing one of its features, so the work
+// scales with those shared non-zeros instead of with numRows * numFeatures. Rows sharing nothing
+// with the query are visited in order of norm, only until they get too far to make the k nearest.
+public class SparseIndex {
+    private final SparseDistanceMetric metric;
+    private final int numRows;
+    private final int numFeatures;
+    // Postings of feature f: rows and values at [featurePointers[f], featurePointers[f + 1])
+    private final int[] featurePointers;
+    private final int[] postingRows;
+    private final double[] postingValues;
+    private final double[] squaredNorms;
+    // Rows sorted by squared norm, ascending
+    private final int[] rowsByNorm;
+    private final ThreadLocal<SearchState> searchStates;
+    private final IndexStats stats;
+
+    public SparseIndex(SparseDataset data, SparseDistanceMetric metric) {
+        long start = System.nanoTime();
+        this.metric = metric;
+        this.numRows = data.numRows();
+        this.numFeatures = data.numFeatures();
+        this.squaredNorms = data.squaredNorms();
+
+        // Counting sort of the non-zeros by column; rows stay in increasing order within each posting list
+        int[] columnIndices = data.columnIndices();
+        double[] values = data.values();
+        this.featurePointers = new int[numFeatures + 1];
+        for (int column : columnIndices) {
+            featurePointers[column + 1]++;
+        }
+        for (int f = 0; f < numFeatures; f++) {
+            featurePointers[f + 1] += featurePointers[f];
+        }
+        this.postingRows = new int[values.length];
+        this.postingValues = new double[values.length];
+        int[] next = Arrays.copyOf(featurePointers, numFeatures);
+        for (int r = 0; r < numRows; r++) {
+            for (int k = data.rowStart(r); k < data.rowEnd(r); k++) {
+                int position = next[columnIndices[k]]++;
+                postingRows[position] = r;
+                postingValues[position] = values[k];
+            }
+        }
+
+        Integer[] order = new Integer[numRows];
+        for (int r = 0; r < numRows; r++) {
+            order[r] = r;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(squaredNorms[a], squaredNorms[b]));
+        this.rowsByNorm = new int[numRows];
+        for (int r = 0; r < numRows; r++) {
+            rowsByNorm[r] = order[r];
+        }
+        this.searchStates = ThreadLocal.withInitial(() -> new SearchState(numRows));
+        this.stats = new IndexStats(System.nanoTime() - start, 1, 0);
+    }
+
+    public int numFeatures() {
+        return numFeatures;
+    }
+
+    // Offers the k nearest training rows to row of queries (which must have numFeatures() columns)
+    public void search(SparseDataset queries, int row, NeighborHeap heap) {
+        long start = System.nanoTime();
+        SearchState state = searchStates.get();
+        heap.clear();
+        state.nextQuery();
+
+        // Scatter: accumulate the dot product of every training row sharing a feature with the query
+        int[] columnIndices = queries.columnIndices();
+        double[] values = queries.values();
+        int touched = 0;
+        for (int k = queries.rowStart(row); k < queries.rowEnd(row); k++) {
+            int feature = columnIndices[k];
+            double value = values[k];
+            for (int p = featurePointers[feature]; p < featurePointers[feature + 1]; p++) {
+                int trainingRow = postingRows[p];
+                if (state.marks[trainingRow] != state.mark) {
+                    state.marks[trainingRow] = state.mark;
+                    state.dots[trainingRow] = 0.0;
+                    state.touched[touched++] = trainingRow;
+                }
+                state.dots[trainingRow] += value * postingValues[p];
+            }
+        }
+
+        double queryNorm = queries.squaredNorms()[row];
+        for (int i = 0; i < touched; i++) {
+            int trainingRow = state.touched[i];
+            heap.offer(trainingRow, metric.reducedDistance(state.dots[trainingRow], queryNorm, squaredNorms[trainingRow]));
+        }
+
+        // The rest have a dot product of 0 and a distance that grows with their norm
+        long computations = touched;
+        for (int trainingRow : rowsByNorm) {
+            if (state.marks[trainingRow] == state.mark) {
+                continue;
+            }
+            double distance = metric.reducedDistance(0.0, queryNorm, squaredNorms[trainingRow]);
+            computations++;
+            if (distance > heap.bound()) {
+                break;
+            }
+            heap.offer(trainingRow, distance);
+        }
+        stats.recordQuery(computations, System.nanoTime() - start);
+    }
+
+    public IndexStats stats() {
+        return stats;
+    }
+
+    private static class SearchState {
+        final double[] dots;
+        final int[] touched;
+        // A training row's dot product belongs to the current query when its mark equals mark
+        final int[] marks;
+        int mark;
+
+        SearchState(int numRows) {
+            this.dots = new double[numRows];
+            this.touched = new int[numRows];
+            this.marks = new int[numRows];
+        }
+
+        void nextQuery() {
+            if (++mark == Integer.MAX_VALUE) {
+                Arrays.fill(marks, 0);
+                mark = 1;
+            }
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package Models.persistence;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+// Versioned binary container for a trained model: an ordered list of int and double array sections,
+// opened by memory-mapping with no parsing. Models score from heap arrays, so ints() and doubles() still
+// copy each section once, which costs about as much as reading the file. What each section holds is up
+// to the model that wrote it.
+//
+// Layout, all values little-endian:
+//   header (64 bytes)   magic, version, model type id, section count
+//   section table       per section: element type, length, offset (16 bytes)
+//   sections            the array values, each starting on a 64-byte boundary
+public class ModelFile {
+    public static final String EXTENSION = ".mlm";
+
+    private static final int MAGIC = 0x4D444C4D; // "MLDM"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int ENTRY_SIZE = 16;
+    private static final int ALIGNMENT = 64;
+    private static final int INT_SECTION = 1;
+    private static final int DOUBLE_SECTION = 2;
+    private static final int WRITE_BUFFER_SIZE = 1 << 20;
+
+    private final Path file;
+    private final int[] types;
+    private final ByteBuffer[] sections;
+
+    private ModelFile(Path file, int[] types, ByteBuffer[] sections) {
+        this.file = file;
+        this.types = types;
+        this.sections = sections;
+    }
+
+    // Writes the sections, each an int[] or a double[], in order
+    public static void write(Path file, ModelType type, Object... sections) throws IOException {
+        int[] types = new int[sections.length];
+        int[] lengths = new int[sections.length];
+        long[] offsets = new long[sections.length];
+        long position = align(HEADER_SIZE + (long) ENTRY_SIZE * sections.length);
+        for (int s = 0; s < sections.length; s++) {
+            if (sections[s] instanceof int[]) {
+                types[s] = INT_SECTION;
+                lengths[s] = ((int[]) sections[s]).length;
+            } else if (sections[s] instanceof double[]) {
+                types[s] = DOUBLE_SECTION;
+                lengths[s] = ((double[]) sections[s]).length;
+            } else {
+                throw new IllegalArgumentException("Sections must be int or double arrays");
+            }
+            // One mapping per section when loading, and a mapping is limited to 2 GB
+            if ((long) lengths[s] * elementSize(types[s]) > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Section " + s + " is larger than 2 GB");
+            }
+            offsets[s] = position;
+            position = align(position + (long) lengths[s] * elementSize(types[s]));
+        }
+
+        // Write next to the target and move it into place so readers never see a partial file
+        Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE + ENTRY_SIZE * sections.length)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC)
+                    .putInt(VERSION)
+                    .putInt(type.id())
+                    .putInt(sections.length);
+            header.position(HEADER_SIZE);
+            for (int s = 0; s < sections.length; s++) {
+                header.putInt(types[s])
+                        .putInt(lengths[s])
+                        .putLong(offsets[s]);
+            }
+            header.clear();
+            writeFully(channel, header, 0);
+
+            ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            for (int s = 0; s < sections.length; s++) {
+                long sectionPosition = offsets[s];
+                int size = elementSize(types[s]);
+                for (int i = 0; i < lengths[s]; ) {
+                    int count = Math.min(lengths[s] - i, WRITE_BUFFER_SIZE / size);
+                    buffer.clear();
+                    if (types[s] == INT_SECTION) {
+                        buffer.asIntBuffer().put((int[]) sections[s], i, count);
+                    } else {
+                        buffer.asDoubleBuffer().put((double[]) sections[s], i, count);
+                    }
+                    buffer.limit(count * size);
+                    sectionPosition += writeFully(channel, buffer, sectionPosition);
+                    i += count;
+                }
+            }
+            // Pad the file to its full length so the last aligned section can always be mapped
+            if (channel.size() < position) {
+                writeFully(channel, ByteBuffer.allocate(1), position - 1);
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Maps a file written for a model of the expected type
+    public static ModelFile open(Path file, ModelType expected) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_SIZE) {
+                throw new IOException("Not a model file: " + file);
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt(0) != MAGIC) {
+                throw new IOException("Not a model file: " + file);
+            }
+            if (header.getInt(4) != VERSION) {
+                throw new IOException("Unsupported model file version " + header.getInt(4));
+            }
+            ModelType type = ModelType.fromId(header.getInt(8));
+            if (type != expected) {
+                throw new IOException("Expected a " + expected + " model but " + file + " holds "
+                        + (type == null ? "an unknown model type " + header.getInt(8) : "a " + type + " model"));
+            }
+            int count = header.getInt(12);
+            if (count < 0 || HEADER_SIZE + (long) ENTRY_SIZE * count > fileSize) {
+                throw new IOException("Corrupt model file: " + file);
+            }
+
+            ByteBuffer table = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, (long) ENTRY_SIZE * count)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            int[] types = new int[count];
+            ByteBuffer[] sections = new ByteBuffer[count];
+            for (int s = 0; s < count; s++) {
+                types[s] = table.getInt();
+                int length = table.getInt();
+                long offset = table.getLong();
+                if ((types[s] != INT_SECTION && types[s] != DOUBLE_SECTION) || length < 0 || offset < 0
+                        || offset + (long) length * elementSize(types[s]) > fileSize) {
+                    throw new IOException("Corrupt model file: " + file);
+                }
+                sections[s] = channel.map(FileChannel.MapMode.READ_ONLY, offset, (long) length * elementSize(types[s]))
+                        .order(ByteOrder.LITTLE_ENDIAN);
+            }
+            return new ModelFile(file, types, sections);
+        }
+    }
+
+    public int numSections() {
+        return sections.length;
+    }
+
+    // Bulk-copies an int section out of the mapping
+    public int[] ints(int section) throws IOException {
+        checkSection(section, INT_SECTION);
+        int[] values = new int[sections[section].capacity() / 4];
+        sections[section].duplicate().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(values);
+        return values;
+    }
+
+    // Bulk-copies a double section out of the mapping
+    public double[] doubles(int section) throws IOException {
+        checkSection(section, DOUBLE_SECTION);
+        double[] values = new double[sections[section].capacity() / 8];
+        sections[section].duplicate().order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer().get(values);
+        return values;
+    }
+
+    // Error for content that is well-formed as a file but not as the model it claims to be
+    public IOException corrupt(String detail) {
+        return new IOException("Corrupt model file " + file + ": " + detail);
+    }
+
+    private void checkSection(int section, int type) throws IOException {
+        if (section < 0 || section >= sections.length) {
+            throw corrupt("missing section " + section);
+        }
+        if (types[section] != type) {
+            throw corrupt("section " + section + " has the wrong element type");
+        }
+    }
+
+    private static int elementSize(int type) {
+        return type == INT_SECTION ? 4 : 8;
+    }
+
+    private static long align(long position) {
+        return (position + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+
+    private static int writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int written = 0;
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer, position + written);
+        }
+        return written;
+    }
+}
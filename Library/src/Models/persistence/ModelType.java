@@ -0,0 +1,28 @@
+package Models.persistence;
+
+// Model stored in a ModelFile. The ids are part of the file format and must not change.
+public enum ModelType {
+    LOGISTIC_REGRESSION(1),
+    DECISION_TREE(2),
+    KNN_CLASSIFIER(3);
+
+    private final int id;
+
+    ModelType(int id) {
+        this.id = id;
+    }
+
+    public int id() {
+        return id;
+    }
+
+    // null for an unknown id
+    public static ModelType fromId(int id) {
+        for (ModelType type : values()) {
+            if (type.id == id) {
+                return type;
+            }
+        }
+        return null;
+    }
+}
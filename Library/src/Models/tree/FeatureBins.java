@@ -0,0 +1,110 @@
+package Models.tree;
+
+import DataProcessing.domain.Dataset;
+
+import java.util.Arrays;
+
+// Every feature quantized once into at most MAX_BINS bins, stored as one byte per value
+// (column-major, an eighth of the double matrix). Bin b of a feature holds the values
+// below threshold(feature, b) and at or above threshold(feature, b - 1).
+//
+// A feature with few distinct values gets one bin per value, split at the midpoints; otherwise
+// the bins hold roughly equal numbers of rows, never separating equal values.
+public class FeatureBins {
+    public static final int MAX_BINS = 255;
+
+    private final int numRows;
+    private final int numFeatures;
+    private final byte[] codes;
+    private final double[][] thresholds;
+
+    public FeatureBins(Dataset data, int maxBins) {
+        if (maxBins < 2 || maxBins > MAX_BINS) {
+            throw new IllegalArgumentException("Number of bins must be between 2 and " + MAX_BINS);
+        }
+        this.numRows = data.numRows();
+        this.numFeatures = data.numFeatures();
+        this.codes = new byte[numRows * numFeatures];
+        this.thresholds = new double[numFeatures][];
+
+        double[] columns = data.columnMajor();
+        double[] sorted = new double[numRows];
+        for (int feature = 0; feature < numFeatures; feature++) {
+            int offset = data.columnOffset(feature);
+            System.arraycopy(columns, offset, sorted, 0, numRows);
+            Arrays.sort(sorted);
+            double[] cuts = cutPoints(sorted, maxBins);
+            thresholds[feature] = cuts;
+
+            int codeOffset = feature * numRows;
+            for (int i = 0; i < numRows; i++) {
+                codes[codeOffset + i] = (byte) bin(cuts, columns[offset + i]);
+            }
+        }
+    }
+
+    private static double[] cutPoints(double[] sorted, int maxBins) {
+        int distinct = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || sorted[i] != sorted[i - 1]) {
+                distinct++;
+            }
+        }
+
+        double[] cuts = new double[Math.max(0, Math.min(distinct, maxBins) - 1)];
+        int numCuts = 0;
+        for (int i = 1; i < sorted.length && numCuts < cuts.length; i++) {
+            if (sorted[i] == sorted[i - 1]) {
+                continue;
+            }
+            // With few distinct values cut between every pair, otherwise once a bin has its share of rows
+            if (distinct <= maxBins || i >= (long) (numCuts + 1) * sorted.length / maxBins) {
+                cuts[numCuts++] = splitPoint(sorted[i - 1], sorted[i]);
+            }
+        }
+        return Arrays.copyOf(cuts, numCuts);
+    }
+
+    // Number of cut points at or below the value
+    private static int bin(double[] cuts, double value) {
+        int position = Arrays.binarySearch(cuts, value);
+        return position >= 0 ? position + 1 : -position - 1;
+    }
+
+    // Midpoint of two consecutive distinct values, kept above the lower one so that value < split
+    // sends exactly the values up to the lower one left even when the midpoint rounds down
+    public static double splitPoint(double lower, double upper) {
+        double splitValue = (lower + upper) / 2.0;
+        return splitValue > lower ? splitValue : upper;
+    }
+
+    public int numRows() {
+        return numRows;
+    }
+
+    public int numFeatures() {
+        return numFeatures;
+    }
+
+    public int numBins(int feature) {
+        return thresholds[feature].length + 1;
+    }
+
+    public int code(int row, int feature) {
+        return codes[feature * numRows + row] & 0xFF;
+    }
+
+    // Column-major bin codes, read unsigned; feature f starts at columnOffset(f)
+    public byte[] codes() {
+        return codes;
+    }
+
+    public int columnOffset(int feature) {
+        return feature * numRows;
+    }
+
+    // Raw-value threshold between bin and bin + 1
+    public double threshold(int feature, int bin) {
+        return thresholds[feature][bin];
+    }
+}
@@ -0,0 +1,116 @@
+package Models.tree;
+
+import java.util.List;
+
+// A trained binary tree compacted into parallel arrays, one slot per node, numbered breadth-first
+// from the root at 0 so the top levels that every row passes through sit next to each other.
+// A row goes to left[node] when its value of feature[node] is below threshold[node], otherwise to
+// right[node]. Leaves point to themselves on both sides and hold their class in leafClass; their
+// feature is 0 and their threshold NaN, so stepping from a leaf stays on it.
+public class FlatTree {
+    // Rows walked down the tree together by the batch predict
+    private static final int INTERLEAVE = 4;
+
+    private final int[] feature;
+    private final double[] threshold;
+    private final int[] left;
+    private final int[] right;
+    private final int[] leafClass;
+
+    public FlatTree(int[] feature, double[] threshold, int[] left, int[] right, int[] leafClass) {
+        int numNodes = feature.length;
+        if (numNodes == 0 || threshold.length != numNodes || left.length != numNodes
+                || right.length != numNodes || leafClass.length != numNodes) {
+            throw new IllegalArgumentException("Node arrays must be non-empty and have the same length");
+        }
+        // Children come after their parent in breadth-first order, so a walk can only move forward and
+        // must end at a leaf; this also rejects cycles that would make predict loop forever
+        for (int node = 0; node < numNodes; node++) {
+            boolean leaf = left[node] == node && right[node] == node;
+            if (feature[node] < 0 || (!leaf && (left[node] <= node || left[node] >= numNodes
+                    || right[node] <= node || right[node] >= numNodes))) {
+                throw new IllegalArgumentException("Invalid node " + node);
+            }
+        }
+        this.feature = feature;
+        this.threshold = threshold;
+        this.left = left;
+        this.right = right;
+        this.leafClass = leafClass;
+    }
+
+    public int numNodes() {
+        return feature.length;
+    }
+
+    public boolean isLeaf(int node) {
+        return left[node] == node;
+    }
+
+    public int feature(int node) {
+        return feature[node];
+    }
+
+    public double threshold(int node) {
+        return threshold[node];
+    }
+
+    public int left(int node) {
+        return left[node];
+    }
+
+    public int right(int node) {
+        return right[node];
+    }
+
+    public int leafClass(int node) {
+        return leafClass[node];
+    }
+
+    // Class of the row starting at offset
+    public int predict(double[] features, int offset) {
+        int node = 0;
+        while (left[node] != node) {
+            node = features[offset + feature[node]] < threshold[node] ? left[node] : right[node];
+        }
+        return leafClass[node];
+    }
+
+    public int predict(List<? extends Number> features) {
+        int node = 0;
+        while (left[node] != node) {
+            node = features.get(feature[node]).doubleValue() < threshold[node] ? left[node] : right[node];
+        }
+        return leafClass[node];
+    }
+
+    // Classes of count row-major rows starting at offset, written to out[outOffset...].
+    // Rows are walked in groups so the loads of one row overlap the others instead of each step
+    // waiting on the previous one; a row that reaches its leaf first simply stays there.
+    public void predict(double[] rows, int offset, int numFeatures, int count, int[] out, int outOffset) {
+        int i = 0;
+        for (; i + INTERLEAVE <= count; i += INTERLEAVE) {
+            int o0 = offset + i * numFeatures;
+            int o1 = o0 + numFeatures;
+            int o2 = o1 + numFeatures;
+            int o3 = o2 + numFeatures;
+            int n0 = 0;
+            int n1 = 0;
+            int n2 = 0;
+            int n3 = 0;
+            while (left[n0] != n0 || left[n1] != n1 || left[n2] != n2 || left[n3] != n3) {
+                n0 = rows[o0 + feature[n0]] < threshold[n0] ? left[n0] : right[n0];
+                n1 = rows[o1 + feature[n1]] < threshold[n1] ? left[n1] : right[n1];
+                n2 = rows[o2 + feature[n2]] < threshold[n2] ? left[n2] : right[n2];
+                n3 = rows[o3 + feature[n3]] < threshold[n3] ? left[n3] : right[n3];
+            }
+            out[outOffset + i] = leafClass[n0];
+            out[outOffset + i + 1] = leafClass[n1];
+            out[outOffset + i + 2] = leafClass[n2];
+            out[outOffset + i + 3] = leafClass[n3];
+        }
+        for (; i < count; i++) {
+            out[outOffset + i] = predict(rows, offset + i * numFeatures);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package utils;
+
+// Distance loops over primitive arrays. get() picks an implementation on first use:
+// the Vector API one when the jdk.incubator.vector module is present at runtime
+// (run with --add-modules jdk.incubator.vector), the plain scalar one otherwise.
+// Setting the system property ml.vector=false forces the scalar kernels.
+//
+// The pair kernels compare two rows. They keep four partial sums, one per feature position modulo 4,
+// add them as (s0 + s1) + (s2 + s3) and then the leftover features in order, with separate multiplies
+// and adds (no fma), so both implementations round identically.
+//
+// The *Rows kernels compare one query with rows [from, to) of a column-major matrix, where
+// feature j of row i is columns[j * numRows + i], and write the results to out[0..to-from).
+// They work across rows, so they vectorize for any number of features, and they add up the
+// terms in the same order as the metrics' scalar loops, so their results are bit-identical.
+public interface DistanceKernels {
+    // Sum of squared differences
+    double squaredL2(double[] a, int aOffset, double[] b, int bOffset, int length);
+
+    // Sum of absolute differences
+    double l1(double[] a, int aOffset, double[] b, int bOffset, int length);
+
+    void squaredL2Rows(double[] query, int queryOffset, double[] columns, int numRows, int numFeatures,
+                       int from, int to, double[] out);
+
+    void l1Rows(double[] query, int queryOffset, double[] columns, int numRows, int numFeatures,
+                int from, int to, double[] out);
+
+    // Sum of weights[j] * (query[j] - row[j])^2 over the features where neither value is NaN
+    void weightedSquaredRows(double[] query, int queryOffset, double[] columns, int numRows, int numFeatures,
+                             int from, int to, double[] weights, double[] out);
+
+    String name();
+
+    static DistanceKernels get() {
+        return KernelSelector.KERNELS;
+    }
+}
@@ -2,7 +2,7 @@ package utils;
 
 import java.util.List;
 
-public class EuclideanDistance implements DistanceMetric<Double> {
+public class EuclideanDistance implements DistanceMetric<Double>, PrimitiveDistanceMetric {
 
     @Override
     public double calculate(List<Double> a, List<Double> b) {
@@ -32,4 +32,61 @@ public class EuclideanDistance implements DistanceMetric<Double> {
 
         return Math.sqrt(sumOfSquares);
     }
-}
\ No newline at end of file
+
+    @Override
+    public double distance(double[] a, int aOffset, double[] b, int bOffset, int length) {
+        return Math.sqrt(reducedDistance(a, aOffset, b, bOffset, length));
+    }
+
+    // Squared Euclidean distance
+    @Override
+    public double reducedDistance(double[] a, int aOffset, double[] b, int bOffset, int length) {
+        // Without a bound there is nothing to abandon early, so the whole row goes to the pair kernel.
+        // Its summation order differs from the loop below, so results may differ in the last bits.
+        return DistanceKernels.get().squaredL2(a, aOffset, b, bOffset, length);
+    }
+
+    @Override
+    public double reducedDistance(double[] a, int aOffset, double[] b, int bOffset, int length, double bound) {
+        double sumOfSquares = 0.0;
+        int i = 0;
+        // Check the bound once per block of four terms to keep the loop tight
+        for (; i + 4 <= length; i += 4) {
+            double d0 = a[aOffset + i] - b[bOffset + i];
+            double d1 = a[aOffset + i + 1] - b[bOffset + i + 1];
+            double d2 = a[aOffset + i + 2] - b[bOffset + i + 2];
+            double d3 = a[aOffset + i + 3] - b[bOffset + i + 3];
+            sumOfSquares += d0 * d0 + d1 * d1 + d2 * d2 + d3 * d3;
+            if (sumOfSquares > bound) {
+                return sumOfSquares;
+            }
+        }
+        for (; i < length; i++) {
+            double diff = a[aOffset + i] - b[bOffset + i];
+            sumOfSquares += diff * diff;
+        }
+        return sumOfSquares;
+    }
+
+    @Override
+    public double toDistance(double reducedDistance) {
+        return Math.sqrt(reducedDistance);
+    }
+
+    @Override
+    public double toReducedDistance(double distance) {
+        return distance * distance;
+    }
+
+    @Override
+    public double axisDistance(int axis, double delta) {
+        return delta * delta;
+    }
+
+    @Override
+    public boolean reducedDistances(double[] query, int queryOffset, double[] columns, int numRows,
+                                    int numFeatures, int from, int to, double[] out) {
+        DistanceKernels.get().squaredL2Rows(query, queryOffset, columns, numRows, numFeatures, from, to, out);
+        return true;
+    }
+}
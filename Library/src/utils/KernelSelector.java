@@ -0,0 +1,24 @@
+package utils;
+
+// Chooses the DistanceKernels implementation once per JVM
+final class KernelSelector {
+    static final DistanceKernels KERNELS = select();
+
+    private KernelSelector() {
+    }
+
+    private static DistanceKernels select() {
+        if (!Boolean.parseBoolean(System.getProperty("ml.vector", "true"))
+                || ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return new ScalarDistanceKernels();
+        }
+        // Loaded by name so that nothing links against the incubator module when it is missing
+        try {
+            return (DistanceKernels) Class.forName("utils.VectorDistanceKernels")
+                    .getDeclaredConstructor()
+                    .newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return new ScalarDistanceKernels();
+        }
+    }
+}
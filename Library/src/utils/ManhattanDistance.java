@@ -2,7 +2,7 @@ package utils;
 
 import java.util.List;
 
-public class ManhattanDistance implements DistanceMetric<Double> {
+public class ManhattanDistance implements DistanceMetric<Double>, PrimitiveDistanceMetric {
 
     @Override
     public double calculate(List<Double> a, List<Double> b) {
@@ -31,4 +31,59 @@ public class ManhattanDistance implements DistanceMetric<Double> {
 
         return sumOfAbsoluteDifferences;
     }
-}
\ No newline at end of file
+
+    @Override
+    public double distance(double[] a, int aOffset, double[] b, int bOffset, int length) {
+        return reducedDistance(a, aOffset, b, bOffset, length);
+    }
+
+    // The Manhattan distance needs no final transform, so the reduced distance is the distance itself
+    @Override
+    public double reducedDistance(double[] a, int aOffset, double[] b, int bOffset, int length) {
+        // Without a bound there is nothing to abandon early, so the whole row goes to the pair kernel.
+        // Its summation order differs from the loop below, so results may differ in the last bits.
+        return DistanceKernels.get().l1(a, aOffset, b, bOffset, length);
+    }
+
+    @Override
+    public double reducedDistance(double[] a, int aOffset, double[] b, int bOffset, int length, double bound) {
+        double sumOfAbsoluteDifferences = 0.0;
+        int i = 0;
+        // Check the bound once per block of four terms to keep the loop tight
+        for (; i + 4 <= length; i += 4) {
+            sumOfAbsoluteDifferences += Math.abs(a[aOffset + i] - b[bOffset + i])
+                    + Math.abs(a[aOffset + i + 1] - b[bOffset + i + 1])
+                    + Math.abs(a[aOffset + i + 2] - b[bOffset + i + 2])
+                    + Math.abs(a[aOffset + i + 3] - b[bOffset + i + 3]);
+            if (sumOfAbsoluteDifferences > bound) {
+                return sumOfAbsoluteDifferences;
+            }
+        }
+        for (; i < length; i++) {
+            sumOfAbsoluteDifferences += Math.abs(a[aOffset + i] - b[bOffset + i]);
+        }
+        return sumOfAbsoluteDifferences;
+    }
+
+    @Override
+    public double toDistance(double reducedDistance) {
+        return reducedDistance;
+    }
+
+    @Override
+    public double toReducedDistance(double distance) {
+        return distance;
+    }
+
+    @Override
+    public double axisDistance(int axis, double delta) {
+        return Math.abs(delta);
+    }
+
+    @Override
+    public boolean reducedDistances(double[] query, int queryOffset, double[] columns, int numRows,
+                                    int numFeatures, int from, int to, double[] out) {
+        DistanceKernels.get().l1Rows(query, queryOffset, columns, numRows, numFeatures, from, to, out);
+        return true;
+    }
+}
@@ -0,0 +1,10 @@
+package utils;
+
+// Training rows transformed once by a metric (see PrimitiveDistanceMetric.prepare) so that
+// scanning them needs less work per pair than the metric's plain reducedDistance
+public interface PreparedRows {
+    int numRows();
+
+    // Reduced distances from the query to rows [from, to), written to out[0..to-from)
+    void reducedDistances(double[] query, int queryOffset, int from, int to, double[] out);
+}
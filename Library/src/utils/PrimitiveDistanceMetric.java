@@ -0,0 +1,42 @@
+package utils;
+
+// Distance metric over slices of primitive arrays, so rows stored in one contiguous
+// feature matrix can be compared without boxing or copying.
+//
+// The reduced distance is a cheaper value with the same ordering as the distance
+// (e.g. the squared Euclidean distance), for callers that only rank neighbours.
+public interface PrimitiveDistanceMetric {
+    double distance(double[] a, int aOffset, double[] b, int bOffset, int length);
+
+    double reducedDistance(double[] a, int aOffset, double[] b, int bOffset, int length);
+
+    // Stops accumulating as soon as the partial sum exceeds bound; the result is then
+    // some value greater than bound rather than the exact reduced distance
+    double reducedDistance(double[] a, int aOffset, double[] b, int bOffset, int length, double bound);
+
+    double toDistance(double reducedDistance);
+
+    double toReducedDistance(double distance);
+
+    // Lower bound, in reduced units, on what a coordinate difference of delta along axis
+    // adds to the reduced distance. Spatial indexes sum these over axes to prune regions,
+    // so the reduced distance must be at least the sum of the per-axis bounds.
+    // The default of 0 is always safe but disables that pruning.
+    default double axisDistance(int axis, double delta) {
+        return 0.0;
+    }
+
+    // Reduced distances from the query to rows [from, to) of a column-major matrix with numRows rows,
+    // written to out[0..to-from) (see DistanceKernels). Returns false, without writing anything, when
+    // the metric has no such kernel; callers then fall back to reducedDistance row by row.
+    default boolean reducedDistances(double[] query, int queryOffset, double[] columns, int numRows,
+                                     int numFeatures, int from, int to, double[] out) {
+        return false;
+    }
+
+    // Transforms the training rows once into a form the metric scans faster than pair by pair,
+    // or returns null when it has none
+    default PreparedRows prepare(double[] rowMajor, int numRows, int numFeatures) {
+        return null;
+    }
+}
@@ -0,0 +1,145 @@
+package utils;
+
+import java.util.Arrays;
+
+// Plain Java kernels, used when the Vector API is not available
+class ScalarDistanceKernels implements DistanceKernels {
+
+    @Override
+    public double squaredL2(double[] a, int aOffset, double[] b, int bOffset, int length) {
+        double s0 = 0.0;
+        double s1 = 0.0;
+        double s2 = 0.0;
+        double s3 = 0.0;
+        int i = 0;
+        for (; i + 4 <= length; i += 4) {
+            double d0 = a[aOffset + i] - b[bOffset + i];
+            double d1 = a[aOffset + i + 1] - b[bOffset + i + 1];
+            double d2 = a[aOffset + i + 2] - b[bOffset + i + 2];
+            double d3 = a[aOffset + i + 3] - b[bOffset + i + 3];
+            s0 += d0 * d0;
+            s1 += d1 * d1;
+            s2 += d2 * d2;
+            s3 += d3 * d3;
+        }
+        double sum = (s0 + s1) + (s2 + s3);
+        for (; i < length; i++) {
+            double diff = a[aOffset + i] - b[bOffset + i];
+            sum += diff * diff;
+        }
+        return sum;
+    }
+
+    @Override
+    public double l1(double[] a, int aOffset, double[] b, int bOffset, int length) {
+        double s0 = 0.0;
+        double s1 = 0.0;
+        double s2 = 0.0;
+        double s3 = 0.0;
+        int i = 0;
+        for (; i + 4 <= length; i += 4) {
+            s0 += Math.abs(a[aOffset + i] - b[bOffset + i]);
+            s1 += Math.abs(a[aOffset + i + 1] - b[bOffset + i + 1]);
+            s2 += Math.abs(a[aOffset + i + 2] - b[bOffset + i + 2]);
+            s3 += Math.abs(a[aOffset + i + 3] - b[bOffset + i + 3]);
+        }
+        double sum = (s0 + s1) + (s2 + s3);
+        for (; i < length; i++) {
+            sum += Math.abs(a[aOffset + i] - b[bOffset + i]);
+        }
+        return sum;
+    }
+
+    @Override
+    public void squaredL2Rows(double[] query, int queryOffset, double[] columns, int numRows, int numFeatures,
+                              int from, int to, double[] out) {
+        int count = to - from;
+        Arrays.fill(out, 0, count, 0.0);
+        int j = 0;
+        // Features in blocks of four, matching EuclideanDistance
+        for (; j + 4 <= numFeatures; j += 4) {
+            double q0 = query[queryOffset + j];
+            double q1 = query[queryOffset + j + 1];
+            double q2 = query[queryOffset + j + 2];
+            double q3 = query[queryOffset + j + 3];
+            int c0 = j * numRows + from;
+            int c1 = c0 + numRows;
+            int c2 = c1 + numRows;
+            int c3 = c2 + numRows;
+            for (int i = 0; i < count; i++) {
+                double d0 = q0 - columns[c0 + i];
+                double d1 = q1 - columns[c1 + i];
+                double d2 = q2 - columns[c2 + i];
+                double d3 = q3 - columns[c3 + i];
+                out[i] += d0 * d0 + d1 * d1 + d2 * d2 + d3 * d3;
+            }
+        }
+        for (; j < numFeatures; j++) {
+            double q = query[queryOffset + j];
+            int c = j * numRows + from;
+            for (int i = 0; i < count; i++) {
+                double diff = q - columns[c + i];
+                out[i] += diff * diff;
+            }
+        }
+    }
+
+    @Override
+    public void l1Rows(double[] query, int queryOffset, double[] columns, int numRows, int numFeatures,
+                       int from, int to, double[] out) {
+        int count = to - from;
+        Arrays.fill(out, 0, count, 0.0);
+        int j = 0;
+        // Features in blocks of four, matching ManhattanDistance
+        for (; j + 4 <= numFeatures; j += 4) {
+            double q0 = query[queryOffset + j];
+            double q1 = query[queryOffset + j + 1];
+            double q2 = query[queryOffset + j + 2];
+            double q3 = query[queryOffset + j + 3];
+            int c0 = j * numRows + from;
+            int c1 = c0 + numRows;
+            int c2 = c1 + numRows;
+            int c3 = c2 + numRows;
+            for (int i = 0; i < count; i++) {
+                out[i] += Math.abs(q0 - columns[c0 + i])
+                        + Math.abs(q1 - columns[c1 + i])
+                        + Math.abs(q2 - columns[c2 + i])
+                        + Math.abs(q3 - columns[c3 + i]);
+            }
+        }
+        for (; j < numFeatures; j++) {
+            double q = query[queryOffset + j];
+            int c = j * numRows + from;
+            for (int i = 0; i < count; i++) {
+                out[i] += Math.abs(q - columns[c + i]);
+            }
+        }
+    }
+
+    @Override
+    public void weightedSquaredRows(double[] query, int queryOffset, double[] columns, int numRows, int numFeatures,
+                                    int from, int to, double[] weights, double[] out) {
+        int count = to - from;
+        Arrays.fill(out, 0, count, 0.0);
+        for (int j = 0; j < numFeatures; j++) {
+            double q = query[queryOffset + j];
+            // An invalid query value drops the feature for every row
+            if (Double.isNaN(q)) {
+                continue;
+            }
+            int c = j * numRows + from;
+            for (int i = 0; i < count; i++) {
+                double value = columns[c + i];
+                if (!Double.isNaN(value)) {
+                    double diff = q - value;
+                    out[i] += weights[j] * diff * diff;
+                }
+            }
+        }
+    }
+
+    @Override
+    public String name() {
+        return "scalar";
+    }
+}
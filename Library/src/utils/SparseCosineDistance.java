@@ -0,0 +1,52 @@
+package utils;
+
+import java.util.List;
+
+// Cosine distance 1 - a.b / (|a| |b|), in [0, 2]. A zero vector is at distance 1 from everything.
+// It ignores vector lengths, which suits term-frequency and hashed text features.
+public class SparseCosineDistance implements DistanceMetric<Double>, SparseDistanceMetric {
+
+    @Override
+    public double calculate(List<Double> a, List<Double> b) {
+        if (a == null || b == null) {
+            throw new IllegalArgumentException("Input lists cannot be null");
+        }
+
+        if (a.size() != b.size()) {
+            throw new IllegalArgumentException("Input lists must have the same size. Found: "
+                    + a.size() + " and " + b.size());
+        }
+
+        double dot = 0.0;
+        double squaredNormA = 0.0;
+        double squaredNormB = 0.0;
+        for (int i = 0; i < a.size(); i++) {
+            Double val1 = a.get(i);
+            Double val2 = b.get(i);
+
+            // Handle null values
+            if (val1 == null || val2 == null) {
+                throw new IllegalArgumentException("Values cannot be null at index " + i);
+            }
+
+            dot += val1 * val2;
+            squaredNormA += val1 * val1;
+            squaredNormB += val2 * val2;
+        }
+        return reducedDistance(dot, squaredNormA, squaredNormB);
+    }
+
+    @Override
+    public double reducedDistance(double dot, double squaredNormA, double squaredNormB) {
+        if (squaredNormA == 0.0 || squaredNormB == 0.0) {
+            return 1.0;
+        }
+        return 1.0 - dot / Math.sqrt(squaredNormA * squaredNormB);
+    }
+
+    // Cosine distance has no cheaper equivalent, the reduced distance is the distance itself
+    @Override
+    public double toDistance(double reducedDistance) {
+        return reducedDistance;
+    }
+}
@@ -0,0 +1,21 @@
+package utils;
+
+import DataProcessing.domain.SparseDataset;
+
+// Distance between sparse rows that depends on them only through their dot product and squared norms.
+// With the norms computed once per row, a distance costs one sparse dot product, and rows sharing no
+// non-zero with the query need no work beyond their norm.
+//
+// For a dot product of 0, the reduced distance must not decrease as squaredNormB grows: indexes
+// scan rows that share nothing with the query in order of norm and stop at the first one too far.
+public interface SparseDistanceMetric {
+    double reducedDistance(double dot, double squaredNormA, double squaredNormB);
+
+    double toDistance(double reducedDistance);
+
+    default double distance(SparseDataset a, int rowA, SparseDataset b, int rowB) {
+        double dot = SparseKernels.dot(a.columnIndices(), a.values(), a.rowStart(rowA), a.rowEnd(rowA),
+                b.columnIndices(), b.values(), b.rowStart(rowB), b.rowEnd(rowB));
+        return toDistance(reducedDistance(dot, a.squaredNorms()[rowA], b.squaredNorms()[rowB]));
+    }
+}
@@ -0,0 +1,12 @@
+package utils;
+
+// Euclidean distance that also works on sparse rows, through |a - b|^2 = |a|^2 + |b|^2 - 2 a.b.
+// On dense data it behaves exactly like EuclideanDistance.
+public class SparseEuclideanDistance extends EuclideanDistance implements SparseDistanceMetric {
+
+    // The expansion can round slightly below zero for (nearly) identical rows
+    @Override
+    public double reducedDistance(double dot, double squaredNormA, double squaredNormB) {
+        return Math.max(0.0, squaredNormA + squaredNormB - 2.0 * dot);
+    }
+}
@@ -0,0 +1,70 @@
+package utils;
+
+import java.util.Arrays;
+
+// Kernels over sparse vectors stored as increasing index arrays with their values (CSR row slices)
+public final class SparseKernels {
+    private SparseKernels() {
+    }
+
+    // Dot product of a[aFrom, aTo) and b[bFrom, bTo) by merging the two index lists: O(nnz(a) + nnz(b)).
+    // When one side is much shorter, its indices are binary-searched in the other instead.
+    public static double dot(int[] aIndices, double[] aValues, int aFrom, int aTo,
+                             int[] bIndices, double[] bValues, int bFrom, int bTo) {
+        if ((aTo - aFrom) * 16 < bTo - bFrom) {
+            return searchDot(aIndices, aValues, aFrom, aTo, bIndices, bValues, bFrom, bTo);
+        }
+        if ((bTo - bFrom) * 16 < aTo - aFrom) {
+            return searchDot(bIndices, bValues, bFrom, bTo, aIndices, aValues, aFrom, aTo);
+        }
+
+        double sum = 0.0;
+        int i = aFrom;
+        int j = bFrom;
+        while (i < aTo && j < bTo) {
+            int a = aIndices[i];
+            int b = bIndices[j];
+            if (a == b) {
+                sum += aValues[i++] * bValues[j++];
+            } else if (a < b) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return sum;
+    }
+
+    private static double searchDot(int[] shortIndices, double[] shortValues, int shortFrom, int shortTo,
+                                    int[] longIndices, double[] longValues, int longFrom, int longTo) {
+        double sum = 0.0;
+        int low = longFrom;
+        for (int i = shortFrom; i < shortTo && low < longTo; i++) {
+            int position = Arrays.binarySearch(longIndices, low, longTo, shortIndices[i]);
+            if (position >= 0) {
+                sum += shortValues[i] * longValues[position];
+                low = position + 1;
+            } else {
+                low = -position - 1;
+            }
+        }
+        return sum;
+    }
+
+    // Dot product of a sparse vector with a dense one starting at denseOffset: O(nnz)
+    public static double dot(int[] indices, double[] values, int from, int to, double[] dense, int denseOffset) {
+        double sum = 0.0;
+        for (int k = from; k < to; k++) {
+            sum += values[k] * dense[denseOffset + indices[k]];
+        }
+        return sum;
+    }
+
+    public static double squaredNorm(double[] values, int from, int to) {
+        double sum = 0.0;
+        for (int k = from; k < to; k++) {
+            sum += values[k] * values[k];
+        }
+        return sum;
+    }
+}
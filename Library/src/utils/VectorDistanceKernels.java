@@ -0,0 +1,192 @@
+package utils;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.util.Arrays;
+
+// Kernels on the incubating Vector API, using the widest lane count the CPU supports.
+// Only loaded through KernelSelector, after it has checked that the module is present.
+class VectorDistanceKernels extends ScalarDistanceKernels {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+    // The pair kernels hold the four partial sums in the lanes of one 256-bit vector
+    private static final VectorSpecies<Double> PAIR_SPECIES = DoubleVector.SPECIES_256;
+    // Without native 256-bit vectors the pair kernels would run emulated, slower than the scalar loop
+    private static final boolean PAIR_NATIVE = SPECIES.vectorBitSize() >= PAIR_SPECIES.vectorBitSize();
+
+    @Override
+    public double squaredL2(double[] a, int aOffset, double[] b, int bOffset, int length) {
+        if (!PAIR_NATIVE) {
+            return super.squaredL2(a, aOffset, b, bOffset, length);
+        }
+        DoubleVector sum = DoubleVector.zero(PAIR_SPECIES);
+        int i = 0;
+        for (; i + 4 <= length; i += 4) {
+            DoubleVector diff = DoubleVector.fromArray(PAIR_SPECIES, a, aOffset + i)
+                    .sub(DoubleVector.fromArray(PAIR_SPECIES, b, bOffset + i));
+            sum = sum.add(diff.mul(diff));
+        }
+        double result = (sum.lane(0) + sum.lane(1)) + (sum.lane(2) + sum.lane(3));
+        for (; i < length; i++) {
+            double diff = a[aOffset + i] - b[bOffset + i];
+            result += diff * diff;
+        }
+        return result;
+    }
+
+    @Override
+    public double l1(double[] a, int aOffset, double[] b, int bOffset, int length) {
+        if (!PAIR_NATIVE) {
+            return super.l1(a, aOffset, b, bOffset, length);
+        }
+        DoubleVector sum = DoubleVector.zero(PAIR_SPECIES);
+        int i = 0;
+        for (; i + 4 <= length; i += 4) {
+            sum = sum.add(DoubleVector.fromArray(PAIR_SPECIES, a, aOffset + i)
+                    .sub(DoubleVector.fromArray(PAIR_SPECIES, b, bOffset + i))
+                    .abs());
+        }
+        double result = (sum.lane(0) + sum.lane(1)) + (sum.lane(2) + sum.lane(3));
+        for (; i < length; i++) {
+            result += Math.abs(a[aOffset + i] - b[bOffset + i]);
+        }
+        return result;
+    }
+
+    // The row kernels keep one row per lane and add the terms with separate multiplies and adds
+    // (no fma) in the scalar order, so each lane rounds exactly like the scalar loop
+    @Override
+    public void squaredL2Rows(double[] query, int queryOffset, double[] columns, int numRows, int numFeatures,
+                              int from, int to, double[] out) {
+        int count = to - from;
+        Arrays.fill(out, 0, count, 0.0);
+        int vectorCount = SPECIES.loopBound(count);
+        int j = 0;
+        for (; j + 4 <= numFeatures; j += 4) {
+            DoubleVector q0 = DoubleVector.broadcast(SPECIES, query[queryOffset + j]);
+            DoubleVector q1 = DoubleVector.broadcast(SPECIES, query[queryOffset + j + 1]);
+            DoubleVector q2 = DoubleVector.broadcast(SPECIES, query[queryOffset + j + 2]);
+            DoubleVector q3 = DoubleVector.broadcast(SPECIES, query[queryOffset + j + 3]);
+            int c0 = j * numRows + from;
+            int c1 = c0 + numRows;
+            int c2 = c1 + numRows;
+            int c3 = c2 + numRows;
+            int i = 0;
+            for (; i < vectorCount; i += SPECIES.length()) {
+                DoubleVector d0 = q0.sub(DoubleVector.fromArray(SPECIES, columns, c0 + i));
+                DoubleVector d1 = q1.sub(DoubleVector.fromArray(SPECIES, columns, c1 + i));
+                DoubleVector d2 = q2.sub(DoubleVector.fromArray(SPECIES, columns, c2 + i));
+                DoubleVector d3 = q3.sub(DoubleVector.fromArray(SPECIES, columns, c3 + i));
+                DoubleVector block = d0.mul(d0).add(d1.mul(d1)).add(d2.mul(d2)).add(d3.mul(d3));
+                DoubleVector.fromArray(SPECIES, out, i).add(block).intoArray(out, i);
+            }
+            for (; i < count; i++) {
+                double d0 = query[queryOffset + j] - columns[c0 + i];
+                double d1 = query[queryOffset + j + 1] - columns[c1 + i];
+                double d2 = query[queryOffset + j + 2] - columns[c2 + i];
+                double d3 = query[queryOffset + j + 3] - columns[c3 + i];
+                out[i] += d0 * d0 + d1 * d1 + d2 * d2 + d3 * d3;
+            }
+        }
+        for (; j < numFeatures; j++) {
+            double q = query[queryOffset + j];
+            DoubleVector qv = DoubleVector.broadcast(SPECIES, q);
+            int c = j * numRows + from;
+            int i = 0;
+            for (; i < vectorCount; i += SPECIES.length()) {
+                DoubleVector diff = qv.sub(DoubleVector.fromArray(SPECIES, columns, c + i));
+                DoubleVector.fromArray(SPECIES, out, i).add(diff.mul(diff)).intoArray(out, i);
+            }
+            for (; i < count; i++) {
+                double diff = q - columns[c + i];
+                out[i] += diff * diff;
+            }
+        }
+    }
+
+    @Override
+    public void l1Rows(double[] query, int queryOffset, double[] columns, int numRows, int numFeatures,
+                       int from, int to, double[] out) {
+        int count = to - from;
+        Arrays.fill(out, 0, count, 0.0);
+        int vectorCount = SPECIES.loopBound(count);
+        int j = 0;
+        for (; j + 4 <= numFeatures; j += 4) {
+            DoubleVector q0 = DoubleVector.broadcast(SPECIES, query[queryOffset + j]);
+            DoubleVector q1 = DoubleVector.broadcast(SPECIES, query[queryOffset + j + 1]);
+            DoubleVector q2 = DoubleVector.broadcast(SPECIES, query[queryOffset + j + 2]);
+            DoubleVector q3 = DoubleVector.broadcast(SPECIES, query[queryOffset + j + 3]);
+            int c0 = j * numRows + from;
+            int c1 = c0 + numRows;
+            int c2 = c1 + numRows;
+            int c3 = c2 + numRows;
+            int i = 0;
+            for (; i < vectorCount; i += SPECIES.length()) {
+                DoubleVector block = q0.sub(DoubleVector.fromArray(SPECIES, columns, c0 + i)).abs()
+                        .add(q1.sub(DoubleVector.fromArray(SPECIES, columns, c1 + i)).abs())
+                        .add(q2.sub(DoubleVector.fromArray(SPECIES, columns, c2 + i)).abs())
+                        .add(q3.sub(DoubleVector.fromArray(SPECIES, columns, c3 + i)).abs());
+                DoubleVector.fromArray(SPECIES, out, i).add(block).intoArray(out, i);
+            }
+            for (; i < count; i++) {
+                out[i] += Math.abs(query[queryOffset + j] - columns[c0 + i])
+                        + Math.abs(query[queryOffset + j + 1] - columns[c1 + i])
+                        + Math.abs(query[queryOffset + j + 2] - columns[c2 + i])
+                        + Math.abs(query[queryOffset + j + 3] - columns[c3 + i]);
+            }
+        }
+        for (; j < numFeatures; j++) {
+            double q = query[queryOffset + j];
+            DoubleVector qv = DoubleVector.broadcast(SPECIES, q);
+            int c = j * numRows + from;
+            int i = 0;
+            for (; i < vectorCount; i += SPECIES.length()) {
+                DoubleVector term = qv.sub(DoubleVector.fromArray(SPECIES, columns, c + i)).abs();
+                DoubleVector.fromArray(SPECIES, out, i).add(term).intoArray(out, i);
+            }
+            for (; i < count; i++) {
+                out[i] += Math.abs(q - columns[c + i]);
+            }
+        }
+    }
+
+    @Override
+    public void weightedSquaredRows(double[] query, int queryOffset, double[] columns, int numRows, int numFeatures,
+                                    int from, int to, double[] weights, double[] out) {
+        int count = to - from;
+        Arrays.fill(out, 0, count, 0.0);
+        int vectorCount = SPECIES.loopBound(count);
+        for (int j = 0; j < numFeatures; j++) {
+            double q = query[queryOffset + j];
+            // An invalid query value drops the feature for every row
+            if (Double.isNaN(q)) {
+                continue;
+            }
+            DoubleVector qv = DoubleVector.broadcast(SPECIES, q);
+            int c = j * numRows + from;
+            int i = 0;
+            for (; i < vectorCount; i += SPECIES.length()) {
+                DoubleVector value = DoubleVector.fromArray(SPECIES, columns, c + i);
+                DoubleVector diff = qv.sub(value);
+                DoubleVector term = diff.mul(weights[j]).mul(diff);
+                // NaN is the only value not equal to itself
+                DoubleVector.fromArray(SPECIES, out, i)
+                        .add(term, value.compare(VectorOperators.EQ, value))
+                        .intoArray(out, i);
+            }
+            for (; i < count; i++) {
+                double value = columns[c + i];
+                if (!Double.isNaN(value)) {
+                    double diff = q - value;
+                    out[i] += weights[j] * diff * diff;
+                }
+            }
+        }
+    }
+
+    @Override
+    public String name() {
+        return "vector (" + SPECIES.length() + " lanes)";
+    }
+}
@@ -0,0 +1,173 @@
+package utils;
+
+import java.util.List;
+import java.util.function.DoublePredicate;
+
+// Weighted Euclidean distance over min-max normalized features. A feature only counts when both
+// values pass its validity predicate (a null predicate accepts everything), so missing values
+// encoded as e.g. 0 can be ignored instead of distorting the distance.
+public class WeightedNormalizedDistance implements DistanceMetric<Double>, PrimitiveDistanceMetric {
+    private final double[] minValues;
+    private final double[] maxValues;
+    private final double[] weights;
+    private final DoublePredicate[] validity;
+    // Precomputed 1 / (max - min)
+    private final double[] inverseRanges;
+    private final int numFeatures;
+
+    public WeightedNormalizedDistance(double[] minValues, double[] maxValues, double[] weights,
+                                      DoublePredicate[] validity) {
+        if (minValues.length != weights.length || maxValues.length != weights.length
+                || validity.length != weights.length) {
+            throw new IllegalArgumentException("Min and max values, weights and validity must have length "
+                    + weights.length);
+        }
+        this.numFeatures = weights.length;
+        this.minValues = minValues.clone();
+        this.maxValues = maxValues.clone();
+        this.weights = weights.clone();
+        this.validity = validity.clone();
+        this.inverseRanges = new double[numFeatures];
+        for (int i = 0; i < numFeatures; i++) {
+            inverseRanges[i] = 1.0 / (maxValues[i] - minValues[i]);
+        }
+    }
+
+    @Override
+    public double calculate(List<Double> f1, List<Double> f2) {
+        if (f1 == null || f2 == null || f1.size() != numFeatures || f2.size() != numFeatures) {
+            throw new IllegalArgumentException("Feature vectors must have length " + numFeatures);
+        }
+
+        double sumSquaredDiff = 0.0;
+        for (int i = 0; i < numFeatures; i++) {
+            double value1 = f1.get(i);
+            double value2 = f2.get(i);
+            if (isValid(i, value1) && isValid(i, value2)) {
+                double diff = (value1 - value2) * inverseRanges[i];
+                sumSquaredDiff += weights[i] * diff * diff;
+            }
+        }
+
+        return Math.sqrt(sumSquaredDiff);
+    }
+
+    @Override
+    public double distance(double[] a, int aOffset, double[] b, int bOffset, int length) {
+        return Math.sqrt(reducedDistance(a, aOffset, b, bOffset, length));
+    }
+
+    // Weighted sum of squared normalized differences, without the final square root
+    @Override
+    public double reducedDistance(double[] a, int aOffset, double[] b, int bOffset, int length) {
+        return reducedDistance(a, aOffset, b, bOffset, length, Double.POSITIVE_INFINITY);
+    }
+
+    @Override
+    public double reducedDistance(double[] a, int aOffset, double[] b, int bOffset, int length, double bound) {
+        if (length != numFeatures) {
+            throw new IllegalArgumentException("Feature vectors must have length " + numFeatures);
+        }
+
+        double sumSquaredDiff = 0.0;
+        for (int i = 0; i < numFeatures; i++) {
+            double value1 = a[aOffset + i];
+            double value2 = b[bOffset + i];
+            if (isValid(i, value1) && isValid(i, value2)) {
+                // Normalizing both values and subtracting equals scaling the raw difference
+                double diff = (value1 - value2) * inverseRanges[i];
+                sumSquaredDiff += weights[i] * diff * diff;
+                if (sumSquaredDiff > bound) {
+                    return sumSquaredDiff;
+                }
+            }
+        }
+        return sumSquaredDiff;
+    }
+
+    // Scales the rows once into a column-major matrix. Invalid values are stored as NaN, which the
+    // weighted kernel masks out, so a scan is a masked weighted L2 with no predicate calls.
+    @Override
+    public PreparedRows prepare(double[] rowMajor, int numRows, int length) {
+        if (length != numFeatures) {
+            throw new IllegalArgumentException("Feature vectors must have length " + numFeatures);
+        }
+        return new ScaledRows(rowMajor, numRows);
+    }
+
+    @Override
+    public double toDistance(double reducedDistance) {
+        return Math.sqrt(reducedDistance);
+    }
+
+    @Override
+    public double toReducedDistance(double distance) {
+        return distance * distance;
+    }
+
+    // Features with a validity rule may be skipped entirely, so only the unrestricted ones give a bound
+    @Override
+    public double axisDistance(int axis, double delta) {
+        if (validity[axis] != null) {
+            return 0.0;
+        }
+        double diff = delta * inverseRanges[axis];
+        return weights[axis] * diff * diff;
+    }
+
+    public int numFeatures() {
+        return numFeatures;
+    }
+
+    public double[] minValues() {
+        return minValues.clone();
+    }
+
+    public double[] maxValues() {
+        return maxValues.clone();
+    }
+
+    public double[] weights() {
+        return weights.clone();
+    }
+
+    private boolean isValid(int index, double value) {
+        return validity[index] == null || validity[index].test(value);
+    }
+
+    private double scale(int feature, double value) {
+        return isValid(feature, value) ? value * inverseRanges[feature] : Double.NaN;
+    }
+
+    private class ScaledRows implements PreparedRows {
+        private final int numRows;
+        private final double[] columns;
+        private final ThreadLocal<double[]> scaledQueries;
+
+        ScaledRows(double[] rowMajor, int numRows) {
+            this.numRows = numRows;
+            this.columns = new double[numRows * numFeatures];
+            for (int i = 0; i < numRows; i++) {
+                for (int j = 0; j < numFeatures; j++) {
+                    columns[j * numRows + i] = scale(j, rowMajor[i * numFeatures + j]);
+                }
+            }
+            this.scaledQueries = ThreadLocal.withInitial(() -> new double[numFeatures]);
+        }
+
+        @Override
+        public int numRows() {
+            return numRows;
+        }
+
+        @Override
+        public void reducedDistances(double[] query, int queryOffset, int from, int to, double[] out) {
+            // The query is scaled once per call; NaN marks its invalid features, which the kernel skips
+            double[] scaled = scaledQueries.get();
+            for (int j = 0; j < numFeatures; j++) {
+                scaled[j] = scale(j, query[queryOffset + j]);
+            }
+            DistanceKernels.get().weightedSquaredRows(scaled, 0, columns, numRows, numFeatures, from, to, weights, out);
+        }
+    }
+}